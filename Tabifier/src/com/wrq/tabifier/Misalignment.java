@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.tabifier;
+
+/**
+ * A line found by TabifierActionHandler.verify() whose text differs from what the tabifier would produce.
+ */
+public final class Misalignment
+{
+    private final int    startOffset;
+    private final int    endOffset;
+    private final int    lineNumber;
+    private final String expectedText;
+
+    public Misalignment(final int startOffset, final int endOffset, final int lineNumber, final String expectedText)
+    {
+        this.startOffset  = startOffset;
+        this.endOffset    = endOffset;
+        this.lineNumber   = lineNumber;
+        this.expectedText = expectedText;
+    }
+
+    /**
+     * @return offset of the beginning of the misaligned line.
+     */
+    public int getStartOffset()
+    {
+        return startOffset;
+    }
+
+    /**
+     * @return offset of the end of the misaligned line.
+     */
+    public int getEndOffset()
+    {
+        return endOffset;
+    }
+
+    /**
+     * @return zero-based number of the misaligned line.
+     */
+    public int getLineNumber()
+    {
+        return lineNumber;
+    }
+
+    /**
+     * @return text that the tabifier would substitute for the line.
+     */
+    public String getExpectedText()
+    {
+        return expectedText;
+    }
+
+    public String toString()
+    {
+        return "line " + (lineNumber + 1) + ": expected \"" + expectedText + "\"";
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.tabifier;
+
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Counters and timings of one tabifier run, as returned by TabifierActionHandler.tabifyPsiFile().  Times are in
+ * nanoseconds.  Parsing, alignment and formatting times do not overlap.
+ */
+public final class RunStatistics
+{
+    private static final Logger logger = Logger.getLogger("com.wrq.tabifier.RunStatistics");
+
+    private final String  fileName;
+    private final int     fileLength;
+    private final int     selectionLength;
+    private       boolean cached;
+    private       int     lines;
+    private       int     lineGroups;
+    private       int     cachedLineGroups;
+    private       int     tokens;
+    private       int     columnNodes;
+    private       int     alignments;
+    private       int     methodCallTypes;
+    private       long    elapsedNanos;
+    private       long    parseNanos;
+    private       long    alignNanos;
+    private       long    formatNanos;
+    private       long    applyNanos;
+    private       int     edits;
+
+    RunStatistics(final String fileName, final int fileLength, final int selectionLength)
+    {
+        this.fileName        = fileName;
+        this.fileLength      = fileLength;
+        this.selectionLength = selectionLength;
+    }
+
+    /**
+     * @return name of the tabified file.
+     */
+    public String getFileName()
+    {
+        return fileName;
+    }
+
+    /**
+     * @return number of characters in the file.
+     */
+    public int getFileLength()
+    {
+        return fileLength;
+    }
+
+    /**
+     * @return number of characters in the tabified selection.
+     */
+    public int getSelectionLength()
+    {
+        return selectionLength;
+    }
+
+    /**
+     * @return true if the edits were replayed from an earlier run over the same text, in which case nothing was
+     *         parsed or aligned.
+     */
+    public boolean isCached()
+    {
+        return cached;
+    }
+
+    /**
+     * @return number of lines parsed.
+     */
+    public int getLines()
+    {
+        return lines;
+    }
+
+    /**
+     * @return number of groups of lines aligned, including those whose formatted text was found in the group cache.
+     */
+    public int getLineGroups()
+    {
+        return lineGroups;
+    }
+
+    /**
+     * @return number of groups of lines whose formatted text was found in the group cache.
+     */
+    public int getCachedLineGroups()
+    {
+        return cachedLineGroups;
+    }
+
+    /**
+     * @return number of tokens parsed.
+     */
+    public int getTokens()
+    {
+        return tokens;
+    }
+
+    /**
+     * @return number of nodes in the column tree at the end of the run.
+     */
+    public int getColumnNodes()
+    {
+        return columnNodes;
+    }
+
+    /**
+     * @return number of times column alignment was invoked, including those with no lines to align.
+     */
+    public int getAlignments()
+    {
+        return alignments;
+    }
+
+    /**
+     * @return number of groups of similar method calls, each of which has its own node type in the column tree.
+     */
+    public int getMethodCallTypes()
+    {
+        return methodCallTypes;
+    }
+
+    /**
+     * @return elapsed time of the whole run, from the start of parsing to the last edit applied.
+     */
+    public long getElapsedNanos()
+    {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return time spent visiting the PSI tree, excluding column alignment.
+     */
+    public long getParseNanos()
+    {
+        return parseNanos;
+    }
+
+    /**
+     * @return time spent aligning columns.
+     */
+    public long getAlignNanos()
+    {
+        return alignNanos;
+    }
+
+    /**
+     * @return time spent formatting lines.
+     */
+    public long getFormatNanos()
+    {
+        return formatNanos;
+    }
+
+    /**
+     * @return time spent applying the edits to the document.
+     */
+    public long getApplyNanos()
+    {
+        return applyNanos;
+    }
+
+    /**
+     * @return number of lines replaced in the document.
+     */
+    public int getEdits()
+    {
+        return edits;
+    }
+
+    void setCached(final boolean cached)
+    {
+        this.cached = cached;
+    }
+
+    void setParseCounts(final int lines,
+                        final int lineGroups,
+                        final int cachedLineGroups,
+                        final int tokens,
+                        final int columnNodes,
+                        final int alignments,
+                        final int methodCallTypes  )
+    {
+        this.lines            = lines;
+        this.lineGroups       = lineGroups;
+        this.cachedLineGroups = cachedLineGroups;
+        this.tokens           = tokens;
+        this.columnNodes      = columnNodes;
+        this.alignments       = alignments;
+        this.methodCallTypes  = methodCallTypes;
+    }
+
+    void setParseTimes(final long parseNanos, final long alignNanos, final long formatNanos)
+    {
+        this.parseNanos  = parseNanos;
+        this.alignNanos  = alignNanos;
+        this.formatNanos = formatNanos;
+    }
+
+    void setApplied(final int edits, final long applyNanos, final long elapsedNanos)
+    {
+        this.edits        = edits;
+        this.applyNanos   = applyNanos;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return one line summary suitable for the status bar.
+     */
+    public String toSummary()
+    {
+        if (cached)
+        {
+            return "Tabifier: " + fileName + ": reused edits of an earlier run; apply " + millis(applyNanos) +
+                   " ms; " + edits + " lines replaced";
+        }
+        return "Tabifier: " + fileName + ": " + lines + " lines, " + lineGroups + " groups, " + tokens +
+               " tokens; parse " + millis(parseNanos) + " ms, align " + millis(alignNanos) + " ms, format " +
+               millis(formatNanos) + " ms, apply " + millis(applyNanos) + " ms; " + edits + " lines replaced";
+    }
+
+    /**
+     * @param time time at which the run finished, in milliseconds since the epoch.
+     * @return these statistics as a single line JSON object, without a line terminator.  Times are in microseconds.
+     */
+    public String toJson(final long time)
+    {
+        final StringBuilder sb = new StringBuilder(320);
+        sb.append("{\"time\":"              ).append(time            );
+        sb.append(",\"file\":"              );
+        appendJsonString(sb, fileName);
+        sb.append(",\"file_length\":"       ).append(fileLength      );
+        sb.append(",\"selection_length\":"  ).append(selectionLength );
+        sb.append(",\"cached\":"            ).append(cached          );
+        sb.append(",\"lines\":"             ).append(lines           );
+        sb.append(",\"line_groups\":"       ).append(lineGroups      );
+        sb.append(",\"cached_line_groups\":").append(cachedLineGroups);
+        sb.append(",\"tokens\":"            ).append(tokens          );
+        sb.append(",\"column_nodes\":"      ).append(columnNodes     );
+        sb.append(",\"alignments\":"        ).append(alignments      );
+        sb.append(",\"method_call_types\":" ).append(methodCallTypes );
+        sb.append(",\"elapsed_us\":"        ).append(elapsedNanos / 1000);
+        sb.append(",\"parse_us\":"          ).append(parseNanos   / 1000);
+        sb.append(",\"align_us\":"          ).append(alignNanos   / 1000);
+        sb.append(",\"format_us\":"         ).append(formatNanos  / 1000);
+        sb.append(",\"apply_us\":"          ).append(applyNanos   / 1000);
+        sb.append(",\"edits\":"             ).append(edits           );
+        sb.append('}');
+        return sb.toString();
+    }
+
+    /**
+     * Appends these statistics as one JSON line to a file, creating the file and its directory if necessary.  A
+     * failure to write is logged and otherwise ignored, since statistics must never interfere with tabifying.
+     *
+     * @param file file to which the line is appended.
+     */
+    public void appendTo(final File file)
+    {
+        final String line = toJson(System.currentTimeMillis()) + '\n';
+        synchronized (RunStatistics.class)
+        {
+            final File dir = file.getParentFile();
+            if (dir != null && !dir.isDirectory() && !dir.mkdirs())
+            {
+                logger.warn("cannot create directory for run statistics: " + dir);
+                return;
+            }
+            Writer writer = null;
+            try
+            {
+                writer = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+                writer.write(line);
+            }
+            catch (IOException e)
+            {
+                logger.warn("cannot write run statistics to " + file, e);
+            }
+            finally
+            {
+                if (writer != null)
+                {
+                    try
+                    {
+                        writer.close();
+                    }
+                    catch (IOException e)
+                    {
+                        logger.warn("cannot close run statistics file " + file, e);
+                    }
+                }
+            }
+        }
+    }
+
+    private static String millis(final long nanos)
+    {
+        final long tenths = (nanos + 50000) / 100000;
+        return (tenths / 10) + "." + (tenths % 10);
+    }
+
+    private static void appendJsonString(final StringBuilder sb, final String s)
+    {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++)
+        {
+            final char c = s.charAt(i);
+            if (c == '"' || c == '\\')
+            {
+                sb.append('\\').append(c);
+            }
+            else if (c < ' ')
+            {
+                sb.append(String.format("\\u%04x", (int) c));
+            }
+            else
+            {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    public String toString()
+    {
+        return toSummary();
+    }
+}
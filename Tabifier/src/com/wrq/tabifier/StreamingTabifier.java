@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.tabifier;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.TextRange;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.BitSet;
+
+/**
+ * Tabifies Java source read from a Reader, writing the result to a Writer as it goes, for generated sources too large
+ * to hold as a single Psi tree.
+ * <p/>
+ * The tabifier needs Psi, so the source cannot be consumed token by token.  Instead it is cut into chunks at lines
+ * where a member of a top level type has just been closed by a right brace.  DocumentParser always ends a group of
+ * lines at a brace that is not part of an array initializer, so no group spans such a line, and each chunk can be
+ * tabified on its own.  A chunk is parsed after the header of its type (everything up to the line holding the type's
+ * left brace) and followed by a closing brace, so that its indentation and context are the same as in the whole file;
+ * only the chunk itself is tabified and written.  Memory is bounded by the chunk size plus the largest member and the
+ * header, rather than by the size of the file.
+ * <p/>
+ * Output is identical to tabifying the whole file with the same engine.
+ */
+public final class StreamingTabifier
+{
+    /** default number of characters gathered before a chunk is tabified. */
+    public static final int            DEFAULT_CHUNK_SIZE = 64 * 1024;
+    private final       TabifierEngine engine;
+    private final       Project        project;
+    private final       int            chunkSize;
+
+    /**
+     * @param engine    engine which tabifies each chunk.
+     * @param project   project whose Psi facilities are used to parse the chunks.
+     * @param chunkSize number of characters gathered before a chunk is tabified at the next member boundary.
+     */
+    public StreamingTabifier(final TabifierEngine engine, final Project project, final int chunkSize)
+    {
+        this.engine    = engine;
+        this.project   = project;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Reads Java source until the end of the reader, writing the tabified source to the writer chunk by chunk.
+     * Neither is closed.  Takes a read action for each chunk, so must not be called while the caller holds one on a
+     * thread which a write action may be waiting for.
+     */
+    public void tabify(final Reader in, final Writer out) throws IOException
+    {
+        final Reader        reader  = in instanceof BufferedReader ? in : new BufferedReader(in);
+        final BraceScanner  scanner = new BraceScanner();
+        final StringBuilder pending = new StringBuilder();
+              String        header  = null;        // text preceding the body of the current top level type
+              String        prefix  = "";          // text preceding pending: empty, or header once it is written
+              int           c;
+        while ((c = reader.read()) != -1)
+        {
+            pending.append((char) c);
+            scanner.next((char) c);
+            if (c != '\n')
+            {
+                continue;
+            }
+            switch (scanner.endLine())
+            {
+                case BraceScanner.BODY_START:
+                    if (header == null)
+                    {
+                        header = pending.toString();
+                    }
+                    break;
+                case BraceScanner.MEMBER_END:
+                    if (header != null && pending.length() >= chunkSize)
+                    {
+                        flush(prefix, pending, "}\n", out);
+                        prefix = header;
+                    }
+                    break;
+                case BraceScanner.TYPE_END:
+                    flush(prefix, pending, "", out);
+                    header = null;
+                    prefix = "";
+                    break;
+            }
+        }
+        if (pending.length() > 0)
+        {
+            flush(prefix, pending, "", out);
+        }
+        out.flush();
+    }
+
+    /**
+     * Tabifies pending text, parsed between prefix and suffix, writes it and clears it.
+     */
+    private void flush(final String        prefix ,
+                       final StringBuilder pending,
+                       final String        suffix ,
+                       final Writer        out     ) throws IOException
+    {
+        final String text   = prefix + pending + suffix;
+        final String result = ApplicationManager.getApplication().runReadAction(new Computable<String>()
+        {
+            public String compute()
+            {
+                final TextRange range = new TextRange(prefix.length(), prefix.length() + pending.length());
+                return TabifierEngine.apply(text, engine.format(project, text, range));
+            }
+        });
+        out.write(result, prefix.length(), result.length() - prefix.length() - suffix.length());
+        pending.setLength(0);
+    }
+
+    /**
+     * Follows the brace nesting of Java source one character at a time, skipping comments and literals, and reports
+     * at the end of each line whether a chunk may end there.  A left brace is taken to begin an array initializer if
+     * it follows one of = , { [ ( ; a right brace closing one is ignored, as DocumentParser ignores it.  Mistaking a
+     * block for an initializer only costs a chunk boundary, so the test is kept simple.
+     * <p/>
+     * Needs nothing of IDEA, so the language server can use it to find the same boundaries in its documents.
+     */
+    public static final class BraceScanner
+    {
+        /** line holds nothing of interest. */
+        public static final int NONE       = 0;
+        /** line opened the body of a top level type, and nothing nested within it. */
+        public static final int BODY_START = 1;
+        /** line closed a member of a top level type, and ends at the type's own nesting level. */
+        public static final int MEMBER_END = 2;
+        /** line closed a top level type. */
+        public static final int TYPE_END   = 3;
+
+        private static final int CODE          = 0;
+        private static final int LINE_COMMENT  = 1;
+        private static final int BLOCK_COMMENT = 2;
+        private static final int STRING        = 3;
+        private static final int CHARACTER     = 4;
+
+        private final BitSet  initializer = new BitSet();
+        private       int     depth;
+        private       int     state       = CODE;
+        private       char    previous;
+        private       char    significant;
+        private       boolean bodyStart;
+        private       boolean memberEnd;
+        private       boolean typeEnd;
+
+        public void next(final char c)
+        {
+            switch (state)
+            {
+                case CODE:
+                    if (c == '/' && previous == '/')
+                    {
+                        state = LINE_COMMENT;
+                    }
+                    else if (c == '*' && previous == '/')
+                    {
+                        state = BLOCK_COMMENT;
+                        previous = 0;                   // so that "/*/" does not end the comment
+                        return;
+                    }
+                    else if (c == '"')
+                    {
+                        state = STRING;
+                    }
+                    else if (c == '\'')
+                    {
+                        state = CHARACTER;
+                    }
+                    else if (c == '{')
+                    {
+                        final boolean isInitializer = "=,{[(".indexOf(significant) >= 0;
+                        initializer.set(depth, isInitializer);
+                        depth++;
+                        if (depth == 1 && !isInitializer)
+                        {
+                            bodyStart = true;
+                        }
+                    }
+                    else if (c == '}' && depth > 0)
+                    {
+                        depth--;
+                        if (!initializer.get(depth))
+                        {
+                            if (depth == 1) memberEnd = true;
+                            if (depth == 0) typeEnd   = true;
+                        }
+                    }
+                    if (state == CODE && c != '/' && !Character.isWhitespace(c))
+                    {
+                        significant = c;
+                    }
+                    break;
+                case LINE_COMMENT:
+                    if (c == '\n')
+                    {
+                        state = CODE;
+                    }
+                    break;
+                case BLOCK_COMMENT:
+                    if (c == '/' && previous == '*')
+                    {
+                        state = CODE;
+                        previous = 0;
+                        return;
+                    }
+                    break;
+                case STRING:
+                case CHARACTER:
+                    if (c == '\\' && previous == '\\')
+                    {
+                        previous = 0;                   // escaped backslash; cannot escape what follows
+                        return;
+                    }
+                    if ((c == (state == STRING ? '"' : '\'') && previous != '\\') || c == '\n')
+                    {
+                        state = CODE;
+                        significant = c;
+                    }
+                    break;
+            }
+            previous = c;
+        }
+
+        /**
+         * Called after each newline character.
+         *
+         * @return what the line just ended allows: NONE, BODY_START, MEMBER_END or TYPE_END.
+         */
+        public int endLine()
+        {
+            int result = NONE;
+            if (state == CODE)
+            {
+                if (typeEnd && depth == 0)
+                {
+                    result = TYPE_END;
+                }
+                else if (bodyStart && depth == 1)
+                {
+                    result = BODY_START;
+                }
+                else if (memberEnd && depth == 1)
+                {
+                    result = MEMBER_END;
+                }
+            }
+            bodyStart = false;
+            memberEnd = false;
+            typeEnd   = false;
+            return result;
+        }
+    }
+}
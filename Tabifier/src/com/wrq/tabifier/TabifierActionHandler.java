@@ -25,6 +25,7 @@ import com.intellij.openapi.actionSystem.DataConstants;
 import com.intellij.openapi.actionSystem.DataContext;
 import com.intellij.openapi.application.Application;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.editor.*;
 import com.intellij.openapi.editor.actionSystem.EditorWriteActionHandler;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
@@ -34,21 +35,19 @@ import com.intellij.openapi.fileTypes.StdFileTypes;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ProjectManager;
 import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.wm.StatusBar;
+import com.intellij.openapi.wm.WindowManager;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
 import com.intellij.psi.codeStyle.CodeStyleSettings;
 import com.intellij.psi.codeStyle.CodeStyleSettingsManager;
-import com.wrq.tabifier.columnizer.DocumentParser;
-import com.wrq.tabifier.parse.Line;
-import com.wrq.tabifier.parse.LineGroup;
-import com.wrq.tabifier.parse.PsiTreeUtil;
+import com.wrq.tabifier.cache.TabifyEdit;
 import com.wrq.tabifier.settings.TabifierSettings;
-import org.apache.log4j.Category;
-import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 
-import java.util.ListIterator;
+import java.io.File;
+import java.util.List;
 
 final public class TabifierActionHandler extends EditorWriteActionHandler
 {
@@ -56,9 +55,12 @@ final public class TabifierActionHandler extends EditorWriteActionHandler
     private int indent;
     private boolean smart_tabs;
     private boolean use_tab_char;
+    /** engine of the last run, reused while settings and code style are unchanged; see getEngine(). */
+    private TabifierEngine engine;
     private static final Logger logger = Logger.getLogger("com.wrq.tabifier.TabifierActionHandler");
+    /** name of the file in the IDEA system directory to which run statistics are appended. */
+    private static final String STATS_FILE_NAME = "tabifier-stats.jsonl";
 //    private ProgressBar progressBar;
-    private Project project;
 
     public TabifierActionHandler()
     {
@@ -116,7 +118,7 @@ final public class TabifierActionHandler extends EditorWriteActionHandler
         {
             return;
         }
-        project = (Project) context.getData(DataConstants.PROJECT);
+        final Project project = (Project) context.getData(DataConstants.PROJECT);
         final Application application = ApplicationManager.getApplication();
         final Document document = editor.getDocument();
         final SelectionModel selection = editor.getSelectionModel();
@@ -238,7 +240,7 @@ final public class TabifierActionHandler extends EditorWriteActionHandler
     /**
      * Obtains current settings for indent, tab_size, use_tab_chars, smart_tabs, etc. from the appropriate source
      * (application or project settings).  Also obtains current tabifier settings, and the Document to be updated.
-     * Passes these to tabifyPsiFile.
+     * Passes these to tabifyPsiFile, and reports the statistics of the run if the settings ask for them.
      * 
      * @param editor      current com.intellij.openapi.editor object; contains editor
      *                    settings.
@@ -257,6 +259,53 @@ final public class TabifierActionHandler extends EditorWriteActionHandler
         final Document document = editor.getDocument();
         final CodeStyleSettings cssettings = getCodeStyleSettings(project);
 
+        readCodeStyle(cssettings);
+        final Application application = ApplicationManager.getApplication();
+        final tabifier the_tabifier = (tabifier) application.getComponent(tabifier.class);
+        final TabifierSettings settings = the_tabifier.getSettings();
+        final RunStatistics stats = tabifyPsiFile(psiFile, startOffset, endOffset, cssettings, settings, document);
+        if (settings.show_run_statistics.get())
+        {
+            final StatusBar statusBar = WindowManager.getInstance().getStatusBar(project);
+            if (statusBar != null)
+            {
+                statusBar.setInfo(stats.toSummary());
+            }
+        }
+        if (settings.record_run_statistics.get())
+        {
+            stats.appendTo(new File(PathManager.getSystemPath(), STATS_FILE_NAME));
+        }
+    }
+
+    /**
+     * Checks whether the entire file in the editor is already tabified, without modifying it.
+     *
+     * @param editor  current com.intellij.openapi.editor object.
+     * @param context used to obtain a reference to the current IDEA project.
+     * @return first misaligned line of each group of lines; empty if the file is correctly tabified.
+     */
+    public final List<Misalignment> verify(final Editor editor,
+                                           final DataContext context)
+    {
+        final Project project = (Project) context.getData(DataConstants.PROJECT);
+        PsiDocumentManager.getInstance(project).commitDocument(editor.getDocument());
+        final PsiFile psiFile = getFile(editor, context);
+        final CodeStyleSettings cssettings = getCodeStyleSettings(project);
+        readCodeStyle(cssettings);
+        final tabifier the_tabifier = ApplicationManager.getApplication().getComponent(tabifier.class);
+        return verify(psiFile,
+                psiFile.getTextRange().getStartOffset(),
+                psiFile.getTextRange().getEndOffset(),
+                cssettings,
+                the_tabifier.getSettings());
+    }
+
+    /**
+     * Obtains indent, tab size, tab character and smart tab settings for Java files from the code style settings.
+     */
+    private void readCodeStyle(final CodeStyleSettings cssettings)
+    {
         FileType javaFileType = FileTypeManager.getInstance().getFileTypeByExtension("java"); // was FileType.JAVA
         indent = cssettings.getIndentSize(javaFileType);
         smart_tabs = cssettings.isSmartTabs(javaFileType);
@@ -267,10 +316,6 @@ final public class TabifierActionHandler extends EditorWriteActionHandler
                 ", tab_size=" + tab_size +
                 ", use_tab_char=" + use_tab_char +
                 ", smart tabs=" + smart_tabs);
-        final Application application = ApplicationManager.getApplication();
-        final tabifier the_tabifier = (tabifier) application.getComponent(tabifier.class);
-        final TabifierSettings settings = the_tabifier.getSettings();
-        tabifyPsiFile(psiFile, startOffset, endOffset, cssettings, settings, document);
     }
 
     public static CodeStyleSettings getCodeStyleSettings(final Project project)
@@ -313,169 +358,95 @@ final public class TabifierActionHandler extends EditorWriteActionHandler
     }
 
     /**
-     * Workhorse of the tabifier. Given a selection in a java file, inspect the corresponding
-     * program structure information (Psi) and break the selection into groups of lines at similar
-     * indentation levels. Group these lines according to grouping rules and reformat each line.
-     * 
+     * Tabifies a selection in a java file, replacing each changed line in the document.
+     *
      * @param psiFile     Java file in which selection was made.
      * @param startOffset beginning of selection; already forced to be at beginning of line.
      * @param endOffset   end of selection; already forced to be at end of line.
      * @param settings    current tabifier settings.
      * @param document    IDEA text document, which will be updated with new aligned text.
+     * @return counters and timings of the run.
      */
-    public void tabifyPsiFile(final PsiFile psiFile,
-                              final int startOffset,
-                              final int endOffset,
-                              final CodeStyleSettings codeStyleSettings,
-                              final TabifierSettings settings,
-                              final Document document)
+    public RunStatistics tabifyPsiFile(final PsiFile psiFile,
+                                       final int startOffset,
+                                       final int endOffset,
+                                       final CodeStyleSettings codeStyleSettings,
+                                       final TabifierSettings settings,
+                                       final Document document)
     {
-        /** determine if logging. */
-        boolean logging = false;
+        final long             runStart = System.nanoTime();
+        final RunStatistics    stats    = new RunStatistics(psiFile.getName(), psiFile.getTextLength(),
+                                                            endOffset - startOffset);
+        final List<TabifyEdit> edits    = getEngine(codeStyleSettings, settings).format(psiFile, startOffset,
+                                                                                        endOffset, stats);
+        final long             start    = System.nanoTime();
+        for (TabifyEdit edit : edits)
         {
-            Category c = logger;
-            while (c != null && !logging)
-            {
-                if (c.getLevel() == Level.DEBUG) logging = true;
-                c = c.getParent();
-            }
+            document.replaceString(edit.getStartOffset(), edit.getEndOffset(), edit.getText());
         }
-        if (logging)
-        {
-            logger.debug("tabifyPsiFile: file=" + PsiTreeUtil.elname(psiFile) +
-                    ", selection start/end=[" + startOffset + "," +
-                    endOffset + "]");
-            logger.debug("tabifyPsiFile: indent=" + indent + ", smart_tabs=" + smart_tabs +
-                    ", tab_size=" + tab_size + ", use_tab_char=" + use_tab_char);
-            logger.debug("tabifyPsiFile: tabifier settings are as follows:");
-            final ListIterator /* <Setting> */ li = settings.getSettings();
-            while (li.hasNext())
-            {
-                logger.debug(li.next());
-            }
-        }
-        /**
-         * for now, always create a progress bar, even when run from JUnit test.
-         */
-        if (project == null)
-        {
-            project = ProjectManager.getInstance().getDefaultProject();
-        }
-//        if (progressBar == null)
-//        {
-//            progressBar = new ProgressBar(project);
-//        }
-        /**
-         * parse document into lines of tokens.
-         */
-//        progressBar.getProgressBarDialog();
-//        SwingUtilities.invokeLater(new Runnable()
-//        {
-//            public void run()
-//            {
-//                progressBar.setFilename(psiFile.getName());
-//                progressBar.setCurrent(0);
-//                progressBar.showDialog();
-//            }
-//        });
+        final long             end      = System.nanoTime();
+        stats.setApplied(edits.size(), end - start, end - runStart);
+        TabifierMetrics.getInstance().record(stats);
+        return stats;
+    }
 
-        final DocumentParser cp = new DocumentParser(startOffset,
-                endOffset,
-                codeStyleSettings,
-                settings,
-                tab_size,
-//                progressBar,
-                use_tab_char,
-                smart_tabs,
-                indent);
-//        Runnable parseAndTabify = new Runnable()
-//        {
-//            public void run()
-//            {
-//                ApplicationManager.getApplication().runReadAction(new Runnable()
-//                {
-//                    public void run()
-//                    {
-//                        logger.debug("worker thread running in Application.runReadAction()");
-//                        try
-//                        {
-                            psiFile.accept(cp);
-//                        }
-//                        catch (CancelOperationException coe)
-//                        {
-//                            logger.debug("tabifier operation cancelled in DocumentParser");
-//                            return;
-//                        }
-//                    }
-//                });
-//
-//                logger.debug("worker thread finished; progressBar.isCancelled=" + progressBar.isCancelled());
-//
-//                if (!progressBar.isCancelled())
-//                {
-//                    try
-//                    {
-//                        SwingUtilities.invokeAndWait(new Runnable()
-//                        {
-//                            public void run()
-//                            {
-                                /**
-                                 * reformat each line and replace it in the document, if changed.  Do this on the Swing thread.
-                                 */
-//                                logger.debug("Swing dispatch thread doing document updating");
-                                final ListIterator/*<Line>*/ lineIterator = LineGroup.reformatableLines.listIterator(
-                                        LineGroup.reformatableLines.size());
-                                while (lineIterator.hasPrevious())
-                                {
-                                    final Line line = (Line) lineIterator.previous();
+    /**
+     * Computes the edits which tabify a selection in a java file, without modifying any document.  Since they are
+     * ordered from the end of the file toward the beginning, applying them in order leaves the offsets of the
+     * remaining edits valid.  Only reads the Psi tree, so may be called from any thread holding a read action.
+     *
+     * @param psiFile     Java file in which selection was made.
+     * @param startOffset beginning of selection; already forced to be at beginning of line.
+     * @param endOffset   end of selection; already forced to be at end of line.
+     * @param settings    current tabifier settings.
+     * @return replacements of changed lines, in descending order of offset.  The list must not be modified.
+     * @see TabifierEngine#format(PsiFile, TextRange)
+     */
+    public List<TabifyEdit> computeEdits(final PsiFile psiFile,
+                                         final int startOffset,
+                                         final int endOffset,
+                                         final CodeStyleSettings codeStyleSettings,
+                                         final TabifierSettings settings)
+    {
+        return getEngine(codeStyleSettings, settings).format(psiFile, startOffset, endOffset, null);
+    }
 
-                                    if (line.isFormatDiffers())
-                                    {
-                                        final String s = line.getFormattedLine();
-                                        if (logger.isDebugEnabled())
-                                        {
-                                            logger.debug("replacing region from " +
-                                                    line.getStartOffset() + " to " +
-                                                    line.getEndOffset());
-                                            logger.debug("--- OLD REGION ---");
-                                            logger.debug(document.getText().substring(line.getStartOffset(),
-                                                    line.getEndOffset()));
-                                            logger.debug("--- NEW REGION ---");
-                                            logger.debug(s);
-                                            logger.debug("--- END UPDATE ---");
-                                        }
-                                        document.replaceString(line.getStartOffset(),
-                                                line.getEndOffset(),
-                                                s);
-                                    }
-                                    else
-                                    {
-                                        if (logger.isDebugEnabled())
-                                        {
-                                            logger.debug("no change to region from " +
-                                                    line.getStartOffset() + " to " +
-                                                    line.getEndOffset());
-                                        }
-                                    }
-                                }
-                                LineGroup.reset();
-//                            }
-//                        });
-//                    }
-//                    catch (InterruptedException e)
-//                    {
-//                        logger.debug("swing operation (updating document) interrupted");
-//                        e.printStackTrace();  //To change body of catch statement use Options | File Templates.
-//                    }
-//                    catch (InvocationTargetException e)
-//                    {
-//                        e.printStackTrace();  //To change body of catch statement use Options | File Templates.
-//                    }
-//                }
-//                progressBar.closeDialog();
-//            }
-//        };
-//        new Thread(parseAndTabify, "TabifierWorkerThread").start();
+    /**
+     * Checks whether a selection in a java file is already tabified, without modifying anything.
+     *
+     * @param psiFile     Java file to check.
+     * @param startOffset beginning of selection; already forced to be at beginning of line.
+     * @param endOffset   end of selection; already forced to be at end of line.
+     * @param settings    current tabifier settings.
+     * @return first misaligned line of each group, in ascending order of offset.
+     * @see TabifierEngine#verify(PsiFile, TextRange)
+     */
+    public List<Misalignment> verify(final PsiFile psiFile,
+                                     final int startOffset,
+                                     final int endOffset,
+                                     final CodeStyleSettings codeStyleSettings,
+                                     final TabifierSettings settings)
+    {
+        return getEngine(codeStyleSettings, settings).verify(psiFile, new TextRange(startOffset, endOffset));
+    }
+
+    /**
+     * Building an engine copies the settings and code style, so the engine of the previous run is kept and reused
+     * for as long as its context fingerprint matches.
+     *
+     * @return an engine for the given settings and the indent, tab size, tab character and smart tab values
+     *         currently held by this handler.
+     */
+    private synchronized TabifierEngine getEngine(final CodeStyleSettings codeStyleSettings,
+                                                  final TabifierSettings  settings          )
+    {
+        if (engine == null ||
+            engine.getContextFingerprint() != TabifierEngine.contextFingerprint(settings, codeStyleSettings, indent,
+                                                                                tab_size, use_tab_char, smart_tabs))
+        {
+            engine = new TabifierEngine(settings, codeStyleSettings, indent, tab_size, use_tab_char, smart_tabs);
+        }
+        return engine;
     }
 
 }
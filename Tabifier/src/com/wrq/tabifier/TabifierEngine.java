@@ -0,0 +1,392 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.tabifier;
+
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.fileTypes.FileTypeManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.psi.codeStyle.CodeStyleSettings;
+import com.wrq.tabifier.cache.CleanFileCache;
+import com.wrq.tabifier.cache.EditBuffer;
+import com.wrq.tabifier.cache.TabifyEdit;
+import com.wrq.tabifier.cache.TabifyResultCache;
+import com.wrq.tabifier.columnizer.DocumentParser;
+import com.wrq.tabifier.parse.PsiTreeUtil;
+import com.wrq.tabifier.settings.TabifierSettings;
+import com.wrq.tabifier.util.Fingerprint;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * Entry point for callers that want tabifier output without an editor: build tools, previews, and other threads.
+ * An engine is built once from a snapshot of the tabifier settings and the Java code style (indent, tab size, tab
+ * character and smart tabs), and never changes afterward; later changes to the settings passed in are not seen.
+ * <p/>
+ * format() may be called concurrently from any number of threads, each holding a read action.  Results are shared
+ * through the tabifier's file and group caches.  Because the parsers keep some state in static fields, the parse
+ * itself is serialized among all engines; a cache hit never waits for it.
+ */
+public final class TabifierEngine
+{
+    private static final Logger            logger   = Logger.getLogger("com.wrq.tabifier.TabifierEngine");
+    private static final Object            RUN_LOCK = new Object();
+    private        final TabifierSettings  settings;
+    private        final CodeStyleSettings codeStyleSettings;
+    private        final int               indent;
+    private        final int               tab_size;
+    private        final boolean           use_tab_char;
+    private        final boolean           smart_tabs;
+    /** fingerprint of everything except the text and range that the output depends on; computed once. */
+    private        final long              contextFingerprint;
+
+    /**
+     * @param settings          tabifier settings; a read-only copy is taken.
+     * @param codeStyleSettings IDEA code style settings; a copy is taken.
+     * @param indent            indent size for Java files.
+     * @param tabSize           tab size for Java files.
+     * @param useTabChar        true if tab characters are used for indentation.
+     * @param smartTabs         true if smart tabs are in effect.
+     */
+    public TabifierEngine(final TabifierSettings  settings         ,
+                          final CodeStyleSettings codeStyleSettings,
+                          final int               indent           ,
+                          final int               tabSize          ,
+                          final boolean           useTabChar       ,
+                          final boolean           smartTabs         )
+    {
+        this.settings          = (TabifierSettings) settings.frozenCopy();
+        this.codeStyleSettings = codeStyleSettings.clone();
+        this.indent            = indent;
+        this.tab_size          = tabSize;
+        this.use_tab_char      = useTabChar;
+        this.smart_tabs        = smartTabs;
+        contextFingerprint     = contextFingerprint(this.settings, this.codeStyleSettings, indent, tabSize, useTabChar,
+                                                    smartTabs);
+    }
+
+    /**
+     * Builds an engine whose indent, tab size, tab character and smart tab values are those the code style settings
+     * give for Java files.
+     */
+    public static TabifierEngine create(final TabifierSettings settings, final CodeStyleSettings codeStyleSettings)
+    {
+        final FileType javaFileType = FileTypeManager.getInstance().getFileTypeByExtension("java");
+        return new TabifierEngine(settings,
+                codeStyleSettings,
+                codeStyleSettings.getIndentSize(javaFileType),
+                codeStyleSettings.getTabSize(javaFileType),
+                codeStyleSettings.useTabCharacter(javaFileType),
+                codeStyleSettings.isSmartTabs(javaFileType));
+    }
+
+    /**
+     * Computes the context fingerprint of an engine without building one, so that a cached engine can be checked
+     * against the current settings cheaply.
+     *
+     * @return the value getContextFingerprint() would return for an engine built from the same arguments.
+     */
+    public static long contextFingerprint(final TabifierSettings  settings         ,
+                                          final CodeStyleSettings codeStyleSettings,
+                                          final int               indent           ,
+                                          final int               tabSize          ,
+                                          final boolean           useTabChar       ,
+                                          final boolean           smartTabs         )
+    {
+        return new Fingerprint().add(settings.fingerprint())
+                                .add(TabifyResultCache.codeStyleFingerprint(codeStyleSettings, indent, tabSize,
+                                                                            useTabChar, smartTabs))
+                                .get();
+    }
+
+    /**
+     * @return the context fingerprint of the engine create(settings, codeStyleSettings) would build.
+     */
+    public static long contextFingerprint(final TabifierSettings settings, final CodeStyleSettings codeStyleSettings)
+    {
+        return new Fingerprint().add(settings.fingerprint()).add(codeStyleFingerprint(codeStyleSettings)).get();
+    }
+
+    /**
+     * @return fingerprint of the code style values, including those given for Java files, which an engine created
+     *         from the code style settings would tabify with.
+     */
+    public static long codeStyleFingerprint(final CodeStyleSettings codeStyleSettings)
+    {
+        final FileType javaFileType = FileTypeManager.getInstance().getFileTypeByExtension("java");
+        return TabifyResultCache.codeStyleFingerprint(codeStyleSettings,
+                codeStyleSettings.getIndentSize(javaFileType),
+                codeStyleSettings.getTabSize(javaFileType),
+                codeStyleSettings.useTabCharacter(javaFileType),
+                codeStyleSettings.isSmartTabs(javaFileType));
+    }
+
+    /**
+     * Builds an engine from the current tabifier settings and the code style settings in effect for a project.
+     */
+    public static TabifierEngine create(final TabifierSettings settings, final Project project)
+    {
+        return create(settings, TabifierActionHandler.getCodeStyleSettings(project));
+    }
+
+    public TabifierSettings getSettings()
+    {
+        return settings;
+    }
+
+    /**
+     * @return fingerprint of the settings and code style values this engine tabifies with; two engines with equal
+     *         fingerprints give the same output.
+     */
+    public long getContextFingerprint()
+    {
+        return contextFingerprint;
+    }
+
+    /**
+     * Checks whether a whole Java file is already tabified, consulting a record of files found clean by earlier runs
+     * first.  A file recorded there with its current content and this engine's settings is not parsed at all;
+     * otherwise the file is verified, and the record updated with the result.  The caller saves the record.
+     *
+     * @param psiFile Java file to check.
+     * @param cache   record of files known to be tabified.
+     * @return true if tabifying the file would leave it unchanged.
+     */
+    public boolean isTabified(final PsiFile psiFile, final CleanFileCache cache)
+    {
+        final String       path    = psiFile.getVirtualFile() != null ? psiFile.getVirtualFile().getPath()
+                                                                      : psiFile.getName();
+        final CharSequence content = psiFile.getViewProvider().getContents();
+        if (cache.isClean(path, content, contextFingerprint))
+        {
+            return true;
+        }
+        final boolean clean = verify(psiFile, psiFile.getTextRange()).isEmpty();
+        if (clean)
+        {
+            cache.markClean(path, content, contextFingerprint);
+        }
+        else
+        {
+            cache.forget(path);
+        }
+        return clean;
+    }
+
+    /**
+     * Computes the edits which tabify the given range of a Java file.  No document is modified; the returned edits
+     * are ordered from the end of the file toward the beginning, so applying them in order leaves the offsets of the
+     * remaining edits valid.  Only reads the Psi tree, so may be called from any thread holding a read action.
+     *
+     * @param psiFile Java file to tabify.
+     * @param range   range to tabify; should begin at the beginning of a line and end at the end of a line.
+     * @return replacements of changed lines, in descending order of offset.  The list must not be modified.
+     */
+    public List<TabifyEdit> format(final PsiFile psiFile, final TextRange range)
+    {
+        return format(psiFile, range.getStartOffset(), range.getEndOffset(), null);
+    }
+
+    /**
+     * Computes the edits which tabify the given range of Java source text, which need not belong to any file.
+     *
+     * @param project project whose Psi facilities are used to parse the text.
+     * @param source  Java source text.
+     * @param range   range of the text to tabify, or null for all of it.
+     * @return replacements of changed lines, in descending order of offset.  The list must not be modified.
+     */
+    public List<TabifyEdit> format(final Project project, final CharSequence source, final TextRange range)
+    {
+        final PsiFile psiFile = PsiFileFactory.getInstance(project).createFileFromText("a.java", source.toString());
+        return format(psiFile, range != null ? range : psiFile.getTextRange());
+    }
+
+    /**
+     * Applies edits returned by format() to a copy of the text they were computed from.
+     */
+    public static String apply(final CharSequence text, final List<TabifyEdit> edits)
+    {
+        final StringBuilder result = new StringBuilder(text);
+        for (TabifyEdit edit : edits)
+        {
+            result.replace(edit.getStartOffset(), edit.getEndOffset(), edit.getText());
+        }
+        return result.toString();
+    }
+
+    /**
+     * @param stats receives the counters and timings of the run, if not null.
+     */
+    List<TabifyEdit> format(final PsiFile       psiFile    ,
+                            final int           startOffset,
+                            final int           endOffset  ,
+                            final RunStatistics stats       )
+    {
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("format: file=" + PsiTreeUtil.elname(psiFile) +
+                    ", selection start/end=[" + startOffset + "," +
+                    endOffset + "]");
+            logger.debug("format: indent=" + indent + ", smart_tabs=" + smart_tabs +
+                    ", tab_size=" + tab_size + ", use_tab_char=" + use_tab_char);
+            logger.debug("format: tabifier settings are as follows:");
+            final ListIterator /* <Setting> */ li = settings.getSettings();
+            while (li.hasNext())
+            {
+                logger.debug(li.next());
+            }
+        }
+        /**
+         * if this exact text has already been tabified over the same range with the same settings, replay the edits
+         * that were made then rather than parsing again.
+         */
+        final CharSequence          text     = psiFile.getViewProvider().getContents();
+        final TabifyResultCache.Key cacheKey = new TabifyResultCache.Key(
+                new Fingerprint().add(text).get(),
+                text.length(),
+                new Fingerprint().add(startOffset)
+                                 .add(endOffset)
+                                 .add(contextFingerprint)
+                                 .get()
+                                                                        );
+        final List<TabifyEdit>      cached   = TabifyResultCache.getFileCache().get(cacheKey);
+        if (cached != null)
+        {
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("format: reusing " + cached.size() + " cached edits; file cache hit rate=" +
+                        TabifyResultCache.getFileCache().getHitRate());
+            }
+            if (stats != null)
+            {
+                stats.setCached(true);
+            }
+            return cached;
+        }
+        final List<TabifyEdit> edits;
+        /**
+         * the parsers track whether tokens are in range in static tabifier state, so only one run may parse at a time.
+         */
+        synchronized (RUN_LOCK)
+        {
+            edits = parseAndFormat(psiFile, startOffset, endOffset, text, stats);
+        }
+        TabifyResultCache.getFileCache().put(cacheKey, edits);
+        return edits;
+    }
+
+    /**
+     * Checks whether a range of a java file is already tabified, without modifying anything.  Cheaper than format():
+     * within each group of lines, formatting stops at the first line that differs from its original text, so at most
+     * one misaligned line is reported per group.  An empty result means the range would be left unchanged by
+     * tabifying it.
+     *
+     * @return first misaligned line of each group, in ascending order of offset.
+     */
+    public List<Misalignment> verify(final PsiFile psiFile, final TextRange range)
+    {
+        final CharSequence       text   = psiFile.getViewProvider().getContents();
+        final List<Misalignment> result = new ArrayList<Misalignment>();
+        synchronized (RUN_LOCK)
+        {
+            final DocumentParser cp = newDocumentParser(range.getStartOffset(), range.getEndOffset());
+            cp.setVerifyOnly(true);
+            psiFile.accept(cp);
+            final EditBuffer edits      = cp.getEdits();
+                  int        lineNumber = 0;
+                  int        scanned    = 0;
+            for (int i = 0; i < edits.size(); i++)
+            {
+                final int start = edits.getStartOffset(i);
+                for (; scanned < start; scanned++)
+                {
+                    if (text.charAt(scanned) == '\n') lineNumber++;
+                }
+                result.add(new Misalignment(start, edits.getEndOffset(i), lineNumber, edits.getText(i)));
+            }
+        }
+        logger.debug("verify: found " + result.size() + " misaligned lines");
+        return result;
+    }
+
+    /**
+     * Workhorse of the tabifier. Given a selection in a java file, inspect the corresponding program structure
+     * information (Psi) and break the selection into groups of lines at similar indentation levels. Group these lines
+     * according to grouping rules and reformat each line.  Caller must hold RUN_LOCK.
+     */
+    private List<TabifyEdit> parseAndFormat(final PsiFile       psiFile    ,
+                                            final int           startOffset,
+                                            final int           endOffset  ,
+                                            final CharSequence  text       ,
+                                            final RunStatistics stats       )
+    {
+        final DocumentParser cp         = newDocumentParser(startOffset, endOffset);
+        final long           parseStart = System.nanoTime();
+        psiFile.accept(cp);
+        final long           parseNanos = System.nanoTime() - parseStart - cp.getAlignNanos() -
+                                          cp.getFormatNanos();
+        /**
+         * reformat each line and record its replacement, if changed.
+         */
+        final EditBuffer     buffer     = cp.getEdits();
+        if (logger.isDebugEnabled())
+        {
+            for (int i = buffer.size() - 1; i >= 0; i--)
+            {
+                logger.debug("replacing region from " +
+                        buffer.getStartOffset(i) + " to " +
+                        buffer.getEndOffset(i));
+                logger.debug("--- OLD REGION ---");
+                logger.debug(text.subSequence(buffer.getStartOffset(i),
+                        buffer.getEndOffset(i)));
+                logger.debug("--- NEW REGION ---");
+                logger.debug(buffer.getText(i));
+                logger.debug("--- END UPDATE ---");
+            }
+        }
+        if (stats != null)
+        {
+            stats.setParseCounts(cp.getLineCount(), cp.getGroupCount(),
+                    cp.getCachedGroupCount(), cp.getTokenCount(), cp.getColumnNodeCount(),
+                    cp.getAlignCount(), cp.getMethodCallTypeCount());
+            stats.setParseTimes(parseNanos, cp.getAlignNanos(), cp.getFormatNanos());
+        }
+        return buffer.toEdits();
+    }
+
+    private DocumentParser newDocumentParser(final int startOffset, final int endOffset)
+    {
+        return new DocumentParser(startOffset,
+                endOffset,
+                codeStyleSettings,
+                settings,
+                tab_size,
+                use_tab_char,
+                smart_tabs,
+                indent);
+    }
+}
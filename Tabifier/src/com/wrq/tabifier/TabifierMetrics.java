@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.tabifier;
+
+import com.wrq.tabifier.cache.TabifyResultCache;
+import com.wrq.tabifier.parse.ColumnSequenceNodeType;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates the RunStatistics of every run made by TabifierActionHandler.tabifyPsiFile(), for the lifetime of the
+ * plugin.  Registered as an MBean by the tabifier application component; see TabifierMetricsMBean.
+ */
+public final class TabifierMetrics
+        implements TabifierMetricsMBean
+{
+    public  static final String          OBJECT_NAME = "com.wrq.tabifier:type=Metrics";
+    /** number of recent runs over which percentiles are computed. */
+    private static final int             SAMPLES     = 1024;
+    private static final String[]        STAGES      = {"elapsed", "parse", "align", "format", "apply"};
+    private static final TabifierMetrics instance    = new TabifierMetrics();
+
+    private       long     runs;
+    private       long     cachedRuns;
+    private final long[]   totals  = new long[STAGES.length];
+    /** latency of each stage in the most recent runs, in nanoseconds; a ring buffer indexed by run number. */
+    private final long[][] samples = new long[STAGES.length][SAMPLES];
+    private       int      largestColumnTree;
+    private       int      largestMethodCallTypes;
+
+    private TabifierMetrics()
+    {
+    }
+
+    public static TabifierMetrics getInstance()
+    {
+        return instance;
+    }
+
+    /**
+     * Adds the statistics of one run to the totals.
+     */
+    public synchronized void record(final RunStatistics stats)
+    {
+        final long[] latencies = {stats.getElapsedNanos(),
+                                  stats.getParseNanos(),
+                                  stats.getAlignNanos(),
+                                  stats.getFormatNanos(),
+                                  stats.getApplyNanos()};
+        final int    slot      = (int) (runs % SAMPLES);
+        for (int i = 0; i < STAGES.length; i++)
+        {
+            totals [i]       += latencies[i];
+            samples[i][slot]  = latencies[i];
+        }
+        runs++;
+        if (stats.isCached())
+        {
+            cachedRuns++;
+        }
+        largestColumnTree      = Math.max(largestColumnTree,      stats.getColumnNodes()    );
+        largestMethodCallTypes = Math.max(largestMethodCallTypes, stats.getMethodCallTypes());
+    }
+
+    public synchronized long getRuns()
+    {
+        return runs;
+    }
+
+    public synchronized long getCachedRuns()
+    {
+        return cachedRuns;
+    }
+
+    public double getTotalElapsedMillis()
+    {
+        return totalMillis(0);
+    }
+
+    public double getTotalParseMillis()
+    {
+        return totalMillis(1);
+    }
+
+    public double getTotalAlignMillis()
+    {
+        return totalMillis(2);
+    }
+
+    public double getTotalFormatMillis()
+    {
+        return totalMillis(3);
+    }
+
+    public double getTotalApplyMillis()
+    {
+        return totalMillis(4);
+    }
+
+    public double getElapsedMillis50()
+    {
+        return percentileMillis(0, 50);
+    }
+
+    public double getElapsedMillis90()
+    {
+        return percentileMillis(0, 90);
+    }
+
+    public double getElapsedMillis99()
+    {
+        return percentileMillis(0, 99);
+    }
+
+    public String[] getStageSummaries()
+    {
+        final String[] result = new String[STAGES.length];
+        for (int i = 0; i < STAGES.length; i++)
+        {
+            result[i] = STAGES[i]                                          +
+                        ": total "  + millis(totalMillis(i))               +
+                        " ms, p50 " + millis(percentileMillis(i, 50))      +
+                        " ms, p90 " + millis(percentileMillis(i, 90))      +
+                        " ms, p99 " + millis(percentileMillis(i, 99))      + " ms";
+        }
+        return result;
+    }
+
+    public double percentileMillis(final String stage, final double percentile)
+    {
+        final int index = Arrays.asList(STAGES).indexOf(stage);
+        if (index < 0)
+        {
+            throw new IllegalArgumentException("unknown stage " + stage + "; expected one of " +
+                                               Arrays.toString(STAGES));
+        }
+        if (percentile < 0 || percentile > 100)
+        {
+            throw new IllegalArgumentException("percentile " + percentile + " is not between 0 and 100");
+        }
+        return percentileMillis(index, percentile);
+    }
+
+    public double getFileCacheHitRate()
+    {
+        return TabifyResultCache.getFileCache().getHitRate();
+    }
+
+    public double getGroupCacheHitRate()
+    {
+        return TabifyResultCache.getGroupCache().getHitRate();
+    }
+
+    public int getFileCacheSize()
+    {
+        return TabifyResultCache.getFileCache().size();
+    }
+
+    public int getGroupCacheSize()
+    {
+        return TabifyResultCache.getGroupCache().size();
+    }
+
+    public synchronized int getLargestColumnTree()
+    {
+        return largestColumnTree;
+    }
+
+    public synchronized int getLargestMethodCallTypes()
+    {
+        return largestMethodCallTypes;
+    }
+
+    public int getStaticNodeTypes()
+    {
+        return ColumnSequenceNodeType.getStaticTypeCount();
+    }
+
+    public synchronized void reset()
+    {
+        runs                   = 0;
+        cachedRuns             = 0;
+        largestColumnTree      = 0;
+        largestMethodCallTypes = 0;
+        Arrays.fill(totals, 0);
+    }
+
+    private synchronized double totalMillis(final int stage)
+    {
+        return totals[stage] / 1e6;
+    }
+
+    /**
+     * @return latency of the stage at the given percentile of the recent runs, by the nearest rank method; zero if no
+     *         runs have been recorded.
+     */
+    private synchronized double percentileMillis(final int stage, final double percentile)
+    {
+        final int count = (int) Math.min(runs, SAMPLES);
+        if (count == 0)
+        {
+            return 0;
+        }
+        final long[] sorted = Arrays.copyOf(samples[stage], count);
+        Arrays.sort(sorted);
+        final int rank = (int) Math.ceil(percentile / 100 * count);
+        return sorted[Math.max(rank, 1) - 1] / 1e6;
+    }
+
+    private static String millis(final double millis)
+    {
+        return String.format("%.1f", millis);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.tabifier;
+
+/**
+ * Management interface of TabifierMetrics:  cumulative counters and latencies of all tabifier runs since the plugin
+ * was loaded (or since the last reset), readable with jconsole under the name com.wrq.tabifier:type=Metrics.
+ * Latencies are in milliseconds; percentiles are computed over the most recent runs.
+ */
+public interface TabifierMetricsMBean
+{
+    /**
+     * @return number of runs recorded.
+     */
+    long getRuns();
+
+    /**
+     * @return number of runs whose edits were replayed from the file cache.
+     */
+    long getCachedRuns();
+
+    double getTotalElapsedMillis();
+
+    double getTotalParseMillis();
+
+    double getTotalAlignMillis();
+
+    double getTotalFormatMillis();
+
+    double getTotalApplyMillis();
+
+    double getElapsedMillis50();
+
+    double getElapsedMillis90();
+
+    double getElapsedMillis99();
+
+    /**
+     * @return for each stage (elapsed, parse, align, format, apply), its total time and its 50th, 90th and 99th
+     *         percentile latency.
+     */
+    String[] getStageSummaries();
+
+    /**
+     * @param stage      one of elapsed, parse, align, format or apply.
+     * @param percentile between 0 and 100.
+     * @return latency of the stage at the given percentile of the recent runs, in milliseconds.
+     */
+    double percentileMillis(String stage, double percentile);
+
+    double getFileCacheHitRate();
+
+    double getGroupCacheHitRate();
+
+    int getFileCacheSize();
+
+    int getGroupCacheSize();
+
+    /**
+     * @return largest number of nodes in the column tree of any run.
+     */
+    int getLargestColumnTree();
+
+    /**
+     * @return largest number of method call node types created in any run.
+     */
+    int getLargestMethodCallTypes();
+
+    /**
+     * @return number of statically defined column sequence node types.
+     */
+    int getStaticNodeTypes();
+
+    /**
+     * Discards all recorded runs and zeroes the counters.  Does not clear the caches.
+     */
+    void reset();
+}
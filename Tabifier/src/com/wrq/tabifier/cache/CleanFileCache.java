@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.tabifier.cache;
+
+import com.wrq.tabifier.tabifier;
+import com.wrq.tabifier.util.Fingerprint;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persistent record of the files known to be tabified already, for batch runs which check a whole tree when only a
+ * few of its files have changed.  A file is recorded by path, together with a fingerprint of its content and of the
+ * settings and code style it was checked with; it counts as clean only while all three match.  The whole record is
+ * discarded when it was written by a different version of the tabifier.
+ * <p/>
+ * Changes are held in memory until save().  Saving merges them into whatever is on disk at the time, under a lock on
+ * a sibling ".lock" file, and replaces the cache file by renaming a complete temporary file over it; concurrent runs
+ * sharing one cache file therefore neither lose each other's entries nor see a partly written file.
+ * <p/>
+ * All methods are synchronized.
+ */
+public final class CleanFileCache
+{
+    private static final Logger             logger    = Logger.getLogger("com.wrq.tabifier.cache.CleanFileCache");
+    private static final String             HEADER    = "tabifier-clean-cache ";
+    /** FileLock is held per JVM, not per thread, so saves within one JVM are serialized here too. */
+    private static final Object             SAVE_LOCK = new Object();
+    private        final File               file;
+    private        final String             version;
+    private              Map<String, Entry> entries;
+    /** entries added or (with a null value) removed since the last load or save. */
+    private        final Map<String, Entry> changes   = new HashMap<String, Entry>();
+
+    /**
+     * Reads the cache file written by this version of the tabifier.  A missing, unreadable or outdated file gives an
+     * empty cache.
+     */
+    public static CleanFileCache load(final File file)
+    {
+        return new CleanFileCache(file, tabifier.VERSION);
+    }
+
+    CleanFileCache(final File file, final String version)
+    {
+        this.file    = file;
+        this.version = version;
+        entries      = read();
+    }
+
+    /**
+     * @param path    path of the file.
+     * @param content current content of the file.
+     * @param context fingerprint of the settings and code style the file is checked with; see
+     *                TabifierEngine.getContextFingerprint().
+     * @return true if the file was recorded as tabified with exactly this content and context.
+     */
+    public synchronized boolean isClean(final String path, final CharSequence content, final long context)
+    {
+        final Entry entry = entries.get(path);
+        return entry != null && entry.equals(new Entry(content, context));
+    }
+
+    /**
+     * Records that the file with the given content is tabified under the given context.
+     */
+    public synchronized void markClean(final String path, final CharSequence content, final long context)
+    {
+        if (path.indexOf('\n') >= 0 || path.indexOf('\r') >= 0)
+        {
+            return;
+        }
+        final Entry entry = new Entry(content, context);
+        entries.put(path, entry);
+        changes.put(path, entry);
+    }
+
+    /**
+     * Removes any record of the file, e.g. because it was found to need tabifying.
+     */
+    public synchronized void forget(final String path)
+    {
+        if (entries.remove(path) != null || changes.containsKey(path))
+        {
+            changes.put(path, null);
+        }
+    }
+
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Merges the changes made since the last load or save into the cache file as it is now, and writes the result.
+     * Afterward this cache also holds entries saved meanwhile by other runs.
+     */
+    public synchronized void save() throws IOException
+    {
+        if (changes.isEmpty())
+        {
+            return;
+        }
+        synchronized (SAVE_LOCK)
+        {
+            final File dir = file.getAbsoluteFile().getParentFile();
+            if (!dir.isDirectory() && !dir.mkdirs())
+            {
+                throw new IOException("cannot create directory for clean file cache: " + dir);
+            }
+            final RandomAccessFile lockFile = new RandomAccessFile(new File(dir, file.getName() + ".lock"), "rw");
+            try
+            {
+                final FileLock lock = lockFile.getChannel().lock();
+                try
+                {
+                    final Map<String, Entry> merged = read();
+                    for (Map.Entry<String, Entry> change : changes.entrySet())
+                    {
+                        if (change.getValue() == null)
+                        {
+                            merged.remove(change.getKey());
+                        }
+                        else
+                        {
+                            merged.put(change.getKey(), change.getValue());
+                        }
+                    }
+                    write(dir, merged);
+                    entries = merged;
+                    changes.clear();
+                }
+                finally
+                {
+                    lock.release();
+                }
+            }
+            finally
+            {
+                lockFile.close();
+            }
+        }
+        logger.debug("saved " + entries.size() + " clean files to " + file);
+    }
+
+    /**
+     * @return entries of the cache file, or none if it is missing, unreadable or from another version.
+     */
+    private Map<String, Entry> read()
+    {
+        final Map<String, Entry> result = new HashMap<String, Entry>();
+        BufferedReader reader = null;
+        try
+        {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            if (!(HEADER + version).equals(reader.readLine()))
+            {
+                logger.debug("ignoring clean file cache written by another version: " + file);
+                return result;
+            }
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                final String[] fields = line.split(" ", 4);
+                if (fields.length < 4)
+                {
+                    continue;
+                }
+                try
+                {
+                    result.put(fields[3], new Entry(Long.parseLong(fields[0]),
+                                                    Integer.parseInt(fields[1]),
+                                                    Long.parseLong(fields[2])));
+                }
+                catch (NumberFormatException e)
+                {
+                    logger.debug("ignoring malformed line of clean file cache: " + line);
+                }
+            }
+        }
+        catch (FileNotFoundException e)
+        {
+            // no cache yet.
+        }
+        catch (IOException e)
+        {
+            logger.warn("cannot read clean file cache " + file, e);
+            result.clear();
+        }
+        finally
+        {
+            if (reader != null)
+            {
+                try
+                {
+                    reader.close();
+                }
+                catch (IOException e)
+                {
+                    // ignore
+                }
+            }
+        }
+        return result;
+    }
+
+    private void write(final File dir, final Map<String, Entry> map) throws IOException
+    {
+        final File temp = File.createTempFile(file.getName(), ".tmp", dir);
+        try
+        {
+            final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), "UTF-8"));
+            try
+            {
+                writer.write(HEADER + version + '\n');
+                for (Map.Entry<String, Entry> entry : map.entrySet())
+                {
+                    final Entry e = entry.getValue();
+                    writer.write(e.contentHash + " " + e.contentLength + " " + e.context + " " + entry.getKey() + '\n');
+                }
+            }
+            finally
+            {
+                writer.close();
+            }
+            try
+            {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                           StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally
+        {
+            if (temp.exists() && !temp.delete())
+            {
+                logger.warn("cannot delete temporary file " + temp);
+            }
+        }
+    }
+
+    private static final class Entry
+    {
+        private final long contentHash;
+        private final int  contentLength;
+        private final long context;
+
+        Entry(final CharSequence content, final long context)
+        {
+            this(new Fingerprint().add(content).get(), content.length(), context);
+        }
+
+        Entry(final long contentHash, final int contentLength, final long context)
+        {
+            this.contentHash   = contentHash;
+            this.contentLength = contentLength;
+            this.context       = context;
+        }
+
+        public boolean equals(final Object o)
+        {
+            if (!(o instanceof Entry))
+            {
+                return false;
+            }
+            final Entry other = (Entry) o;
+            return contentHash == other.contentHash && contentLength == other.contentLength && context == other.context;
+        }
+
+        public int hashCode()
+        {
+            return (int) (contentHash ^ (contentHash >>> 32));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.tabifier.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects the edits of one run as each group of lines is formatted, so that the lines and their tokens need not be
+ * kept until the whole document has been parsed.  Offsets are held in primitive arrays; edits must be added in
+ * ascending document order.
+ */
+public final class EditBuffer
+{
+    private int[]    startOffsets = new int[16];
+    private int[]    endOffsets   = new int[16];
+    private String[] texts        = new String[16];
+    private int      size;
+
+    /**
+     * Records that the characters from startOffset (inclusive) to endOffset (exclusive) of the original document are
+     * to be replaced by text.
+     */
+    public void add(final int startOffset, final int endOffset, final String text)
+    {
+        if (size == texts.length)
+        {
+            final int capacity = size * 2;
+            startOffsets = Arrays.copyOf(startOffsets, capacity);
+            endOffsets   = Arrays.copyOf(endOffsets,   capacity);
+            texts        = Arrays.copyOf(texts,        capacity);
+        }
+        startOffsets[size] = startOffset;
+        endOffsets  [size] = endOffset;
+        texts       [size] = text;
+        size++;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public int getStartOffset(final int index)
+    {
+        return startOffsets[index];
+    }
+
+    public int getEndOffset(final int index)
+    {
+        return endOffsets[index];
+    }
+
+    public String getText(final int index)
+    {
+        return texts[index];
+    }
+
+    /**
+     * @return the edits in descending document order, so that each can be applied without shifting the offsets of
+     *         those yet to be applied.
+     */
+    public List<TabifyEdit> toEdits()
+    {
+        final List<TabifyEdit> result = new ArrayList<TabifyEdit>(size);
+        for (int i = size - 1; i >= 0; i--)
+        {
+            result.add(new TabifyEdit(startOffsets[i], endOffsets[i], texts[i]));
+        }
+        return Collections.unmodifiableList(result);
+    }
+}
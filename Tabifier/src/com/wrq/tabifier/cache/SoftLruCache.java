@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.tabifier.cache;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, least-recently-used cache whose values are held by soft references, so that the garbage collector may
+ * reclaim cached results under memory pressure.  Entries whose referents have been collected are treated as misses;
+ * they are purged as soon as the collector enqueues their references, so that their keys are not retained either.
+ * Keys should therefore be small, with anything bulky kept in the value.  Hit and miss counts are kept so that the effectiveness of the cache can be reported.
+ * <p/>
+ * All methods are synchronized; the cache may be shared between the editor action and the settings preview pane.
+ */
+public final class SoftLruCache<K, V>
+{
+    private final int                                 maxEntries;
+    private final LinkedHashMap<K, SoftReference<V>>  map;
+    private final ReferenceQueue<V>                   queue      = new ReferenceQueue<V>();
+    private       long                                hits;
+    private       long                                misses;
+
+    public SoftLruCache(final int maxEntries)
+    {
+        this.maxEntries = maxEntries;
+        this.map        = new LinkedHashMap<K, SoftReference<V>>(16, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(final Map.Entry<K, SoftReference<V>> eldest)
+            {
+                return size() > SoftLruCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @param key key of cached value.
+     * @return cached value, or null if the key is absent or its value has been reclaimed.
+     */
+    public synchronized V get(final K key)
+    {
+        purge();
+        final SoftReference<V> ref   = map.get(key);
+        final V                value = ref == null ? null : ref.get();
+        if (value == null)
+        {
+            if (ref != null)
+            {
+                map.remove(key);
+            }
+            misses++;
+            return null;
+        }
+        hits++;
+        return value;
+    }
+
+    public synchronized void put(final K key, final V value)
+    {
+        purge();
+        map.put(key, new Entry<K, V>(key, value, queue));
+    }
+
+    public synchronized void clear()
+    {
+        map.clear();
+    }
+
+    /**
+     * @return number of entries whose values have not yet been reclaimed.  Reclaimed entries are purged as a side effect.
+     */
+    public synchronized int size()
+    {
+        purge();
+        final Iterator<SoftReference<V>> i = map.values().iterator();
+        while (i.hasNext())
+        {
+            if (i.next().get() == null)
+            {
+                i.remove();
+            }
+        }
+        return map.size();
+    }
+
+    /**
+     * Removes the entries whose values the collector has reclaimed since the last call.  An entry replaced by put()
+     * in the meantime is left alone.
+     */
+    private void purge()
+    {
+        Reference<? extends V> ref;
+        while ((ref = queue.poll()) != null)
+        {
+            final Object key = ((Entry<?, ?>) ref).key;
+            if (map.get(key) == ref)
+            {
+                map.remove(key);
+            }
+        }
+    }
+
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * @return fraction of lookups which found a value, between 0 and 1; zero if no lookups have been made.
+     */
+    public synchronized double getHitRate()
+    {
+        final long lookups = hits + misses;
+        return lookups == 0 ? 0d : (double) hits / lookups;
+    }
+
+    /**
+     * Soft reference to a value which remembers its key, so that the entry can be removed once the value is reclaimed.
+     */
+    private static final class Entry<K, V>
+            extends SoftReference<V>
+    {
+        private final K key;
+
+        Entry(final K key, final V value, final ReferenceQueue<V> queue)
+        {
+            super(value, queue);
+            this.key = key;
+        }
+    }
+}
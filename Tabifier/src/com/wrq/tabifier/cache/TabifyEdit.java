@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.tabifier.cache;
+
+/**
+ * A single replacement of document text produced by tabification: the characters from startOffset (inclusive) to
+ * endOffset (exclusive) of the original document are replaced by the given text.
+ */
+public final class TabifyEdit
+{
+    private final int    startOffset;
+    private final int    endOffset;
+    private final String text;
+
+    public TabifyEdit(final int startOffset, final int endOffset, final String text)
+    {
+        this.startOffset = startOffset;
+        this.endOffset   = endOffset;
+        this.text        = text;
+    }
+
+    public int getStartOffset()
+    {
+        return startOffset;
+    }
+
+    public int getEndOffset()
+    {
+        return endOffset;
+    }
+
+    public String getText()
+    {
+        return text;
+    }
+
+    public String toString()
+    {
+        return "[" + startOffset + "," + endOffset + ") -> \"" + text + "\"";
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.tabifier.cache;
+
+import com.intellij.psi.codeStyle.CodeStyleSettings;
+import com.wrq.tabifier.util.Fingerprint;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Holds results of previous tabifier runs so that repeated requests to tabify unchanged text with unchanged settings
+ * (pressing the tabify key twice, or the settings preview pane re-tabifying the sample text) need not reparse and
+ * realign.  Two levels are kept:
+ * <ul>
+ * <li>whole-file results, mapping document text, selection and settings to the list of edits to apply;</li>
+ * <li>per-group results, mapping the text of one group of lines (see LineGroup) and settings to the formatted text
+ * of each line, for use when only part of a file has changed.</li>
+ * </ul>
+ * Both caches hold their values softly and are bounded in size.  The keys held strongly are a few hashes; everything
+ * else, including the values used to tell apart groups whose hashes collide, is held in the soft value.
+ */
+public final class TabifyResultCache
+{
+    private static final int                                      MAX_FILES  = 32;
+    private static final int                                      MAX_GROUPS = 4096;
+    private static final SoftLruCache<Key, List<TabifyEdit>> fileCache  = new SoftLruCache<Key, List<TabifyEdit>>(MAX_FILES);
+    private static final SoftLruCache<Key, GroupEntry>       groupCache = new SoftLruCache<Key, GroupEntry>(MAX_GROUPS);
+
+    private TabifyResultCache()
+    {
+    }
+
+    public static SoftLruCache<Key, List<TabifyEdit>> getFileCache()
+    {
+        return fileCache;
+    }
+
+    public static SoftLruCache<Key, GroupEntry> getGroupCache()
+    {
+        return groupCache;
+    }
+
+    /**
+     * @param key values identifying a group of lines, and their hashes.
+     * @return the cached result of the group; or null if the group is not cached, or if the cached group merely has
+     *         the same hashes.
+     */
+    public static GroupEntry getGroup(final GroupKey key)
+    {
+        final GroupEntry entry = groupCache.get(key.toKey());
+        return entry != null                               &&
+               Arrays.equals(key.ints,    entry.ints)      &&
+               Arrays.equals(key.strings, entry.strings)     ? entry : null;
+    }
+
+    /**
+     * @param key                values identifying a group of lines, and their hashes.
+     * @param formatted          formatted text of each line of the group, null for lines left unchanged.
+     * @param untouchableValues  values given by alignment to the tokens of the current line excluded from the group,
+     *                           null for tokens left unchanged; or null if there is no such line or none changed.
+     */
+    public static void putGroup(final GroupKey key, final String[] formatted, final String[] untouchableValues)
+    {
+        groupCache.put(key.toKey(), new GroupEntry(key.strings, key.ints, formatted, untouchableValues));
+    }
+
+    public static void clear()
+    {
+        fileCache.clear();
+        groupCache.clear();
+    }
+
+    /**
+     * @return a fingerprint of those code style settings which affect tabifier output.  Only the settings actually
+     *         consulted by the parsers are included.
+     */
+    public static long codeStyleFingerprint(final CodeStyleSettings codeStyleSettings,
+                                            final int               indent,
+                                            final int               tab_size,
+                                            final boolean           use_tab_char,
+                                            final boolean           smart_tabs        )
+    {
+        final CodeStyleSettings css = codeStyleSettings;
+        return new Fingerprint().add(indent)
+                                .add(tab_size)
+                                .add(use_tab_char)
+                                .add(smart_tabs)
+                                .add(css.INDENT_CASE_FROM_SWITCH)
+                                .add(css.SPACE_AFTER_COLON)
+                                .add(css.SPACE_AFTER_COMMA)
+                                .add(css.SPACE_AFTER_QUEST)
+                                .add(css.SPACE_AFTER_SEMICOLON)
+                                .add(css.SPACE_AFTER_TYPE_CAST)
+                                .add(css.SPACE_AROUND_ADDITIVE_OPERATORS)
+                                .add(css.SPACE_AROUND_ASSIGNMENT_OPERATORS)
+                                .add(css.SPACE_AROUND_BITWISE_OPERATORS)
+                                .add(css.SPACE_AROUND_EQUALITY_OPERATORS)
+                                .add(css.SPACE_AROUND_LOGICAL_OPERATORS)
+                                .add(css.SPACE_AROUND_MULTIPLICATIVE_OPERATORS)
+                                .add(css.SPACE_AROUND_RELATIONAL_OPERATORS)
+                                .add(css.SPACE_AROUND_SHIFT_OPERATORS)
+                                .add(css.SPACE_BEFORE_CLASS_LBRACE)
+                                .add(css.SPACE_BEFORE_COLON)
+                                .add(css.SPACE_BEFORE_COMMA)
+                                .add(css.SPACE_BEFORE_IF_LBRACE)
+                                .add(css.SPACE_BEFORE_IF_PARENTHESES)
+                                .add(css.SPACE_BEFORE_METHOD_CALL_PARENTHESES)
+                                .add(css.SPACE_BEFORE_METHOD_LBRACE)
+                                .add(css.SPACE_BEFORE_METHOD_PARENTHESES)
+                                .add(css.SPACE_BEFORE_QUEST)
+                                .add(css.SPACE_BEFORE_SEMICOLON)
+                                .add(css.SPACE_BEFORE_WHILE_LBRACE)
+                                .add(css.SPACE_BEFORE_WHILE_PARENTHESES)
+                                .add(css.SPACE_WITHIN_IF_PARENTHESES)
+                                .add(css.SPACE_WITHIN_METHOD_CALL_PARENTHESES)
+                                .add(css.SPACE_WITHIN_METHOD_PARENTHESES)
+                                .add(css.SPACE_WITHIN_PARENTHESES)
+                                .add(css.SPACE_WITHIN_WHILE_PARENTHESES)
+                                .get();
+    }
+
+    /**
+     * Cache key: a hash and length of the content being tabified, plus a hash of everything else the result depends
+     * on (settings, code style, selection).
+     */
+    public static final class Key
+    {
+        private final long contentHash;
+        private final int  contentLength;
+        private final long contextHash;
+
+        public Key(final long contentHash, final int contentLength, final long contextHash)
+        {
+            this.contentHash   = contentHash;
+            this.contentLength = contentLength;
+            this.contextHash   = contextHash;
+        }
+
+        public boolean equals(final Object o)
+        {
+            if (!(o instanceof Key))
+            {
+                return false;
+            }
+            final Key other = (Key) o;
+            return contentHash   == other.contentHash   &&
+                   contentLength == other.contentLength &&
+                   contextHash   == other.contextHash     ;
+        }
+
+        public int hashCode()
+        {
+            final long h = contentHash * 31 + contextHash;
+            return (int) (h ^ (h >>> 32)) * 31 + contentLength;
+        }
+    }
+
+    /**
+     * Identifies a group of lines:  a hash of the group and of its context, and the values the group's hash was computed
+     * from.  Only the hashes are kept as the key of the group cache; the values are kept with the cached text, and a
+     * lookup succeeds only if they are equal, so that two groups whose hashes collide cannot be given each other's text.
+     */
+    public static final class GroupKey
+    {
+        private final long     contentHash;
+        private final long     contextHash;
+        private final String[] strings;
+        private final int[]    ints;
+
+        /**
+         * @param contentHash hash of strings and ints, or of values equivalent to them.
+         * @param contextHash hash of settings and code style.
+         * @param strings     string values of the group; kept by the cache, so not to be modified afterwards.
+         * @param ints        int values of the group; kept by the cache, so not to be modified afterwards.
+         */
+        public GroupKey(final long     contentHash,
+                        final long     contextHash,
+                        final String[] strings    ,
+                        final int[]    ints        )
+        {
+            this.contentHash = contentHash;
+            this.contextHash = contextHash;
+            this.strings     = strings;
+            this.ints        = ints;
+        }
+
+        private Key toKey()
+        {
+            return new Key(contentHash, strings.length + ints.length, contextHash);
+        }
+    }
+
+    /**
+     * Cached result of a group, with the values identifying it.
+     */
+    public static final class GroupEntry
+    {
+        private final String[] strings;
+        private final int[]    ints;
+        private final String[] formatted;
+        private final String[] untouchableValues;
+
+        GroupEntry(final String[] strings, final int[] ints, final String[] formatted, final String[] untouchableValues)
+        {
+            this.strings           = strings;
+            this.ints              = ints;
+            this.formatted         = formatted;
+            this.untouchableValues = untouchableValues;
+        }
+
+        /**
+         * @return formatted text of each line of the group, null for lines left unchanged.
+         */
+        public String[] getFormatted()
+        {
+            return formatted;
+        }
+
+        /**
+         * Aligning a group may change the values of tokens of the current line even when that line is excluded from
+         * the group (modifiers, for instance, are rearranged across their whole column), and those values are carried
+         * into the next group.  They are replayed when the group is taken from the cache.
+         *
+         * @return values given to the tokens of the excluded current line, null for tokens left unchanged; or null if
+         *         there is no such line or none changed.
+         */
+        public String[] getUntouchableValues()
+        {
+            return untouchableValues;
+        }
+    }
+}
@@ -55,25 +55,13 @@ final class ClassParser
     {
         super(documentParser, codeStyleSettings, settings, documentParser.tab_size);
         this.parent = parent;
-        final ColumnSequence braceSeq      = parent.findOrAppend(ColumnSequenceNodeType.BRACES   );
-        final ColumnSequence classSequence = parent.findOrAppend(ColumnSequenceNodeType.CLASS_SEQ);
-        if (braceSeq.findTokenColumn(AlignableColumnNodeType.BRACES) == null) {
-            braceSeq.appendTokenColumn(settings.align_braces, AlignableColumnNodeType.BRACES);
-        }
-        braces = braceSeq.findTokenColumn(AlignableColumnNodeType.BRACES);
-        ColumnChoice classColumnChoice = classSequence.findColumnChoice(AlignableColumnNodeType.CLASS);
-        if (classColumnChoice == null) {
-            classColumnChoice = classSequence.appendChoiceColumn(settings.align_class, AlignableColumnNodeType.CLASS);
-        }
-        fieldSequence = classColumnChoice.findOrAppend(ColumnSequenceNodeType.FIELD);
-        TokenColumn tc = classSequence.findTokenColumn(AlignableColumnNodeType.TRAILING_COMMENTS);
-        if (tc == null) {
-            tc = classSequence.appendTokenColumn(
-                    settings.align_trailing_comments,
-                    AlignableColumnNodeType.TRAILING_COMMENTS
-                                                             );
-        }
-        trailingComments = tc;
+        final BracesColumnSequence braceSeq      =
+                (BracesColumnSequence) parent.findOrAppend(ColumnSequenceNodeType.BRACES   );
+        final ClassColumnSequence  classSequence =
+                (ClassColumnSequence ) parent.findOrAppend(ColumnSequenceNodeType.CLASS_SEQ);
+        braces           = braceSeq.getBraces();
+        fieldSequence    = classSequence.getFieldSequence();
+        trailingComments = classSequence.getTrailingComments();
     }
 
     protected ColumnChoice getClassColumn()
@@ -33,15 +33,15 @@ import com.wrq.tabifier.settings.TabifierSettings;
 final class CodeBlockParser
         extends NestedParser
 {
-    private final ColumnSequence codeBlockSequence;
-    private       int            codeStatementIndex;
-    private final boolean        spaceBeforeBrace;
-    private final TokenColumn    braces;
-    private final ColumnSequence horizontalCodeBlockSequence;
-    private final TokenColumn    leftBrace;
-    private final TokenColumn    rightBrace;
-    private final ColumnChoice   statements;
-    private final ColumnSequence statementSequence;
+    private final ColumnSequence                    codeBlockSequence;
+    private       int                               codeStatementIndex;
+    private final boolean                           spaceBeforeBrace;
+    private final TokenColumn                       braces;
+    private final HorizontalCodeBlockColumnSequence horizontalCodeBlockSequence;
+    private final TokenColumn                       leftBrace;
+    private final TokenColumn                       rightBrace;
+    private final ColumnChoice                      statements;
+    private final ColumnSequence                    statementSequence;
 
     /*
      * A code block may be aligned in one of two ways: if the braces are on the same line,
@@ -67,25 +67,17 @@ final class CodeBlockParser
                            final boolean           spaceBeforeBrace  )
     {
         super(documentParser, codeStyleSettings, settings, documentParser.tab_size);
-        final ColumnSequence braceSeq = parent.findOrAppend(ColumnSequenceNodeType.BRACES);
-        codeBlockSequence = parent.findOrAppend(ColumnSequenceNodeType.CODE_BLOCK);
-        if (braceSeq.findTokenColumn(AlignableColumnNodeType.BRACES) == null)
-        {
-            braceSeq.appendTokenColumn(settings.align_braces, AlignableColumnNodeType.BRACES);
-        }
-        braces                      = braceSeq.findTokenColumn(AlignableColumnNodeType.BRACES);
+        final BracesColumnSequence braceSeq =
+                (BracesColumnSequence) parent.findOrAppend(ColumnSequenceNodeType.BRACES);
+        codeBlockSequence           = parent.findOrAppend(ColumnSequenceNodeType.CODE_BLOCK);
+        braces                      = braceSeq.getBraces();
         this.spaceBeforeBrace       = spaceBeforeBrace;
-        horizontalCodeBlockSequence = parent.findOrAppend(ColumnSequenceNodeType.HORIZONTAL_CODE_BLOCK);
-        if (horizontalCodeBlockSequence.findTokenColumn(AlignableColumnNodeType.LEFT_BRACE) == null)
-        {
-            horizontalCodeBlockSequence.appendTokenColumn (settings.align_braces, AlignableColumnNodeType.LEFT_BRACE   );
-            horizontalCodeBlockSequence.appendChoiceColumn(settings.align_statements, AlignableColumnNodeType.STATEMENT);
-            horizontalCodeBlockSequence.appendTokenColumn (settings.align_braces, AlignableColumnNodeType.RIGHT_BRACE  );
-        }
-        leftBrace         = horizontalCodeBlockSequence.findTokenColumn(AlignableColumnNodeType.LEFT_BRACE );
-        statements        = horizontalCodeBlockSequence.findColumnChoice(AlignableColumnNodeType.STATEMENT  );
-        rightBrace        = horizontalCodeBlockSequence.findTokenColumn(AlignableColumnNodeType.RIGHT_BRACE);
-        statementSequence = statements.findOrAppend(ColumnSequenceNodeType.CODE_BLOCK);
+        horizontalCodeBlockSequence = (HorizontalCodeBlockColumnSequence)
+                parent.findOrAppend(ColumnSequenceNodeType.HORIZONTAL_CODE_BLOCK);
+        leftBrace         = horizontalCodeBlockSequence.getLeftBrace        ();
+        statements        = horizontalCodeBlockSequence.getStatements       ();
+        rightBrace        = horizontalCodeBlockSequence.getRightBrace       ();
+        statementSequence = horizontalCodeBlockSequence.getStatementSequence();
     }
 
     /**
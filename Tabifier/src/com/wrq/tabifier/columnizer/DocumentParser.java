@@ -24,14 +24,19 @@ package com.wrq.tabifier.columnizer;
 import com.intellij.psi.*;
 import com.intellij.psi.javadoc.PsiDocComment;
 import com.intellij.psi.codeStyle.CodeStyleSettings;
+import com.wrq.tabifier.cache.EditBuffer;
+import com.wrq.tabifier.cache.TabifyResultCache;
 import com.wrq.tabifier.formatter.ColumnNodeTabifier;
 import com.wrq.tabifier.parse.*;
 import com.wrq.tabifier.parse.ColumnSequenceNodeType;
 import com.wrq.tabifier.settings.TabifierSettings;
 import com.wrq.tabifier.tabifier;
+import com.wrq.tabifier.util.Fingerprint;
+import com.wrq.tabifier.util.ThreadAllocation;
 import org.apache.log4j.Logger;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.ListIterator;
 
 /**
@@ -59,6 +64,26 @@ public final class DocumentParser
     private final        LineGroup         lineGroup;
 
     private              TokenColumn       myTrailingComments;
+    /** true when only checking whether lines are already aligned; see setVerifyOnly(). */
+    private              boolean           verifyOnly;
+    /** hash of settings and code style, used to key per-group results in TabifyResultCache. */
+    private final        long              cacheContext;
+    /** replacement text of each changed line, collected as each group is formatted. */
+    private final        EditBuffer        edits              = new EditBuffer();
+    /** node types of the method call groups seen in this run. */
+    private final        MethodCallNodeTypes methodCallTypes;
+    /** counters and timings of this run; see RunStatistics. */
+    private              int               lineCount;
+    private              int               tokenCount;
+    private              int               groupCount;
+    private              int               cachedGroupCount;
+    private              int               alignCount;
+    private              long              alignNanos;
+    private              long              formatNanos;
+    /** bytes allocated by alignment and formatting, if counting.  See setCountAllocations(). */
+    private              boolean           countAllocations;
+    private              long              alignBytes;
+    private              long              formatBytes;
 //    private final ProgressBar progressBar;
 
     /*
@@ -81,16 +106,146 @@ public final class DocumentParser
         this.startOffset       = startOffset;
         this.endOffset         = endOffset;
         this.codeStyleSettings = codeStyleSettings;
-        this.baseSeq           = new ColumnSequence(ColumnSequenceNodeType.BASE_SEQ, null, tab_size, settings);
-        classChoice            = baseSeq.appendChoiceColumn(settings.start_of_column_sequence, AlignableColumnNodeType.PROGRAM);
+        this.baseSeq           = new ColumnSequence(ColumnSequenceNodeType.BASE_SEQ, null, tab_size, this.settings);
+        classChoice            = baseSeq.appendChoiceColumn(this.settings.start_of_column_sequence, AlignableColumnNodeType.PROGRAM);
         final ColumnSequence unknownTokenSeq = classChoice.findOrAppend(ColumnSequenceNodeType.UNKNOWN_TOKEN_SEQ);
-        unknownTokenSeq.appendTokenColumn(settings.start_of_column_sequence, AlignableColumnNodeType.START_OF_COLUMN);
-        lineGroup = new LineGroup(this, settings);
-        LineGroup.reset();
+        unknownTokenSeq.appendTokenColumn(this.settings.start_of_column_sequence, AlignableColumnNodeType.START_OF_COLUMN);
+        lineGroup = new LineGroup(this, this.settings);
 //        this.progressBar = progressBar;
         this.use_tab_char = use_tab_char;
         this.smart_tabs   = smart_tabs;
         this.indent       = indent;
+        this.methodCallTypes = new MethodCallNodeTypes(this.settings.method_call_similarity_threshold.get());
+        this.cacheContext = new Fingerprint().add(this.settings.fingerprint())
+                                             .add(TabifyResultCache.codeStyleFingerprint(codeStyleSettings, indent,
+                                                                                         tab_size, use_tab_char,
+                                                                                         smart_tabs             ))
+                                             .get();
+    }
+
+    /**
+     * In verify mode, formatting of each group of lines stops at the first line whose formatted text differs from its
+     * original text; only that line of the group is added to the edits.  The remaining lines of the group are neither
+     * formatted nor compared.
+     *
+     * @param verifyOnly true to report only the first misaligned line of each group.
+     */
+    public void setVerifyOnly(final boolean verifyOnly)
+    {
+        this.verifyOnly = verifyOnly;
+    }
+
+    /**
+     * Counts the bytes allocated by column alignment and by line formatting, where the JVM supports it; see
+     * getAlignBytes() and getFormatBytes().  Off by default.
+     *
+     * @param countAllocations true to count allocations.
+     */
+    public void setCountAllocations(final boolean countAllocations)
+    {
+        this.countAllocations = countAllocations && ThreadAllocation.isSupported();
+    }
+
+    /**
+     * @return the replacement text of each line changed by formatting, in document order.  Complete once the PsiFile
+     *         has been visited.
+     */
+    public EditBuffer getEdits()
+    {
+        return edits;
+    }
+
+    MethodCallNodeTypes getMethodCallTypes()
+    {
+        return methodCallTypes;
+    }
+
+    /**
+     * @return number of lines parsed so far.
+     */
+    public int getLineCount()
+    {
+        return lineCount;
+    }
+
+    /**
+     * @return number of tokens parsed so far.
+     */
+    public int getTokenCount()
+    {
+        return tokenCount;
+    }
+
+    /**
+     * @return number of groups of lines aligned so far, including those found in the group cache.
+     */
+    public int getGroupCount()
+    {
+        return groupCount;
+    }
+
+    /**
+     * @return number of groups of lines whose formatted text was found in the group cache.
+     */
+    public int getCachedGroupCount()
+    {
+        return cachedGroupCount;
+    }
+
+    /**
+     * @return number of times columns were aligned, including those with no lines to align.
+     */
+    public int getAlignCount()
+    {
+        return alignCount;
+    }
+
+    /**
+     * @return time spent aligning columns, in nanoseconds, not including the time spent formatting lines.
+     */
+    public long getAlignNanos()
+    {
+        return alignNanos;
+    }
+
+    /**
+     * @return time spent formatting lines, in nanoseconds.
+     */
+    public long getFormatNanos()
+    {
+        return formatNanos;
+    }
+
+    /**
+     * @return number of groups of similar method calls seen so far.
+     */
+    public int getMethodCallTypeCount()
+    {
+        return methodCallTypes.size();
+    }
+
+    /**
+     * @return bytes allocated on the parsing thread by ColumnNodeAligner, if counting allocations.
+     */
+    public long getAlignBytes()
+    {
+        return alignBytes;
+    }
+
+    /**
+     * @return bytes allocated on the parsing thread by line formatting, if counting allocations.
+     */
+    public long getFormatBytes()
+    {
+        return formatBytes;
+    }
+
+    /**
+     * @return number of nodes in the column tree.
+     */
+    public int getColumnNodeCount()
+    {
+        return baseSeq.countNodes();
     }
 
     public final void visitReferenceExpression(final PsiReferenceExpression psiReferenceExpression)
@@ -147,8 +302,10 @@ public final class DocumentParser
                 logger.debug("saw first token; resetting scheduleAlignment which was " + scheduleAlignment);
                 scheduleAlignment = false;
             }
+            tokenCount++;
             if (currentLine == null) {
                 currentLine = new Line();
+                lineCount++;
                 lineGroup.addLine(currentLine);
                 currentLine.setIndentLevel(indentLevel);
                 currentLine.setIndentBias (indentBias );
@@ -619,6 +776,12 @@ public final class DocumentParser
         return (currentLine == null ? true : currentLine.isBlankLine());
     }
 
+    /**
+     * Aligns and formats the lines of the group just closed, on the parsing thread, in the shared column tree.  A
+     * group cannot be given a column tree of its own: parsers such as ClassParser and CodeBlockParser keep the
+     * columns and sequences they create in final fields for as long as their class or block lasts, across many
+     * groups, and the untouchable current line already occupies columns of the shared tree when its group closes.
+     */
     private void alignColumns()
     {
 //        if (progressBar.isCancelled()) {
@@ -627,6 +790,8 @@ public final class DocumentParser
         if (tabifier.seeingTokensInRange) {
             logger.debug("alignColumns");
         }
+        final long start = System.nanoTime();
+        alignCount++;
         final ArrayList<Line> linesToAlign = lineGroup.getLinesToAlign();
         final ColumnNodeAligner   cna          = new ColumnNodeAligner(baseSeq, linesToAlign);
         final ColumnNodeTabifier columnNodeTabifier = new ColumnNodeTabifier(baseSeq, linesToAlign);
@@ -645,29 +810,103 @@ public final class DocumentParser
 //                }
 //            });
 //        }
+        int  maxIndentBias    = -1;
+        long groupFormatNanos = 0;
         if (linesToAlign.size() > 0) {
-            final Line untouchable = lineGroup.getUngroupedCurrentLine();
-            if (untouchable != null) {
-                untouchable.setImmutable(true);
-            }
-            cna.align();
-            for (int currentIndentBias = 0; currentIndentBias <= cna.getMaxIndentBias(); currentIndentBias++) {
-                baseSeq.determineNodesToDump(currentIndentBias);
-                baseSeq.dump(currentIndentBias);
-            }
-            for (Line line : linesToAlign)
-            {
-                LineGroup.reformatableLines.add(line);
-                line.formatLine(use_tab_char, smart_tabs, tab_size, indent);
+            groupCount++;
+            final Line                         untouchable     = lineGroup.getUngroupedCurrentLine();
+            final Line[]                       groupLines      = linesToAlign.toArray(new Line[linesToAlign.size()]);
+            final TabifyResultCache.GroupKey   key             = groupKey(groupLines, untouchable);
+            final TabifyResultCache.GroupEntry entry           = TabifyResultCache.getGroup(key);
+                  boolean                      foundDifference = false;
+            if (entry != null) {
+                /**
+                 * an identical group of lines, parsed into identical columns, was aligned before.  Reuse the
+                 * formatted text, and the values alignment gave to the tokens of the untouchable line, leaving only
+                 * the tokens to be cleared from the column tree.  As in ColumnNodeAligner.align(), blank and entirely
+                 * unaligned lines do not count toward the indent bias.
+                 */
+                cachedGroupCount++;
+                final String[] cached = entry.getFormatted();
+                if (entry.getUntouchableValues() != null) {
+                    final String[] values = entry.getUntouchableValues();
+                    for (int i = 0; i < values.length; i++) {
+                        if (values[i] != null) {
+                            untouchable.getTokens().get(i).setAlternateRepresentation(values[i]);
+                        }
+                    }
+                }
+                for (int i = 0; i < groupLines.length; i++) {
+                    if (!groupLines[i].isEntirelyUnaligned()                &&
+                        !groupLines[i].isBlankLine()                        &&
+                        groupLines[i].getIndentBias() > maxIndentBias         ) {
+                        maxIndentBias = groupLines[i].getIndentBias();
+                    }
+                    if (cached[i] != null && !(verifyOnly && foundDifference)) {
+                        edits.add(groupLines[i].getStartOffset(), groupLines[i].getEndOffset(), cached[i]);
+                        foundDifference = true;
+                    }
+                }
             }
-            if (untouchable != null) {
-                untouchable.setImmutable(false);
+            else {
+                final String[] untouchableBefore = untouchableValues(untouchable);
+                if (untouchable != null) {
+                    untouchable.setImmutable(true);
+                }
+                long allocated = countAllocations ? ThreadAllocation.currentThreadBytes() : 0;
+                cna.align();
+                if (countAllocations) {
+                    alignBytes += ThreadAllocation.currentThreadBytes() - allocated;
+                }
+                maxIndentBias = cna.getMaxIndentBias();
+                for (int currentIndentBias = 0; currentIndentBias <= cna.getMaxIndentBias(); currentIndentBias++) {
+                    baseSeq.determineNodesToDump(currentIndentBias);
+                    baseSeq.dump(currentIndentBias);
+                }
+                if (untouchable != null) {
+                    untouchable.setImmutable(false);
+                }
+                final String[] untouchableChanges = untouchableChanges(untouchable, untouchableBefore);
+                /**
+                 * the aligner has dropped blank and entirely unaligned lines from linesToAlign; the rest remain in
+                 * the same order as in groupLines.
+                 */
+                final long     formatStart = System.nanoTime();
+                allocated = countAllocations ? ThreadAllocation.currentThreadBytes() : 0;
+                final String[] formatted   = new String[groupLines.length];
+                int            aligned     = 0;
+                for (int i = 0; i < groupLines.length && aligned < linesToAlign.size(); i++)
+                {
+                    final Line line = groupLines[i];
+                    if (line != linesToAlign.get(aligned)) {
+                        continue;
+                    }
+                    aligned++;
+                    line.formatLine(use_tab_char, smart_tabs, tab_size, indent);
+                    if (line.isFormatDiffers()) {
+                        formatted[i] = line.getFormattedLine();
+                        edits.add(line.getStartOffset(), line.getEndOffset(), formatted[i]);
+                        if (verifyOnly) {
+                            foundDifference = true;
+                            break;
+                        }
+                    }
+                }
+                if (!foundDifference) {
+                    /** a group cut short in verify mode has unformatted lines, so its result is not cached. */
+                    TabifyResultCache.putGroup(key, formatted, untouchableChanges);
+                }
+                groupFormatNanos = System.nanoTime() - formatStart;
+                formatNanos     += groupFormatNanos;
+                if (countAllocations) {
+                    formatBytes += ThreadAllocation.currentThreadBytes() - allocated;
+                }
             }
         }
         /** now traverse the baseSeq, removing all tokens from tokenColumns,
          * except the current line if it was not included in the formatting.
          */
-        for (int currentIndentBias = 0; currentIndentBias <= cna.getMaxIndentBias(); currentIndentBias++) {
+        for (int currentIndentBias = 0; currentIndentBias <= maxIndentBias; currentIndentBias++) {
             baseSeq.clearTokens(lineGroup.getUngroupedCurrentLine(), currentIndentBias);
         }
 //        if (linesToAlign.size() > 0)
@@ -682,6 +921,122 @@ public final class DocumentParser
 //        }
         lineGroup.resetLines();
         scheduleAlignment = false;
+        alignNanos += System.nanoTime() - start - groupFormatNanos;
+    }
+
+    /**
+     * @return the values of the tokens of the untouchable line, or null if there is none.
+     */
+    private static String[] untouchableValues(final Line untouchable)
+    {
+        if (untouchable == null) {
+            return null;
+        }
+        final List<AlignableToken> tokens = untouchable.getTokens();
+        final String[]             values = new String[tokens.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = tokens.get(i).getValue();
+        }
+        return values;
+    }
+
+    /**
+     * @param before values of the tokens of the untouchable line before alignment; see untouchableValues().
+     * @return the values alignment has given the tokens of the untouchable line, null for tokens whose value is the
+     *         same object as before; or null if none changed.  Identity matters, since LineFormatter compares a
+     *         token's value with its original value by reference.
+     */
+    private static String[] untouchableChanges(final Line untouchable, final String[] before)
+    {
+        if (untouchable == null) {
+            return null;
+        }
+        final List<AlignableToken> tokens  = untouchable.getTokens();
+              String[]             changes = null;
+        for (int i = 0; i < before.length; i++) {
+            final String value = tokens.get(i).getValue();
+            if (value != before[i]) {
+                if (changes == null) {
+                    changes = new String[before.length];
+                }
+                changes[i] = value;
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Builds the key under which the formatted text of a group of lines is cached.  Besides the text of each line,
+     * the key includes the indentation of each line and the position in the column tree of each token's column, since
+     * identical text may be parsed into different columns in different contexts.  If the current line is excluded
+     * from the group but still occupies columns, it is included too.
+     */
+    private TabifyResultCache.GroupKey groupKey(final Line[] groupLines, final Line untouchable)
+    {
+        int tokens = 0;
+        for (Line line : groupLines) {
+            tokens += line.getTokens().size();
+        }
+        if (untouchable != null) {
+            tokens += untouchable.getTokens().size();
+        }
+        final int            lines = groupLines.length + (untouchable == null ? 0 : 1);
+        final GroupKeyBuffer key   = new GroupKeyBuffer(new String[2 * tokens], new int[1 + 4 * lines + tokens]);
+        key.add(untouchable != null);
+        for (Line line : groupLines) {
+            key.add(line);
+        }
+        if (untouchable != null) {
+            key.add(untouchable);
+        }
+        return new TabifyResultCache.GroupKey(key.fp.get(), cacheContext, key.strings, key.ints);
+    }
+
+    /**
+     * Collects the values identifying a group of lines, and their hash.  A column's position is hashed by its
+     * precomputed path hash rather than by its path.
+     */
+    private static final class GroupKeyBuffer
+    {
+        private final Fingerprint fp = new Fingerprint();
+        private final String[]    strings;
+        private final int[]       ints;
+        private       int         nStrings;
+        private       int         nInts;
+
+        GroupKeyBuffer(final String[] strings, final int[] ints)
+        {
+            this.strings = strings;
+            this.ints    = ints;
+        }
+
+        void add(final Line line)
+        {
+            add(line.getIndentLevel());
+            add(line.getIndentBias());
+            add(line.isBlankLine());
+            add(line.getTokens().size());
+            for (AlignableToken token : line.getTokens()) {
+                final String      value  = token.getValue();
+                final TokenColumn column = token.getColumn();
+                strings[nStrings++] = value;
+                strings[nStrings++] = column == null ? null : column.getPath();
+                fp.add(value);
+                fp.add(column == null ? 0 : column.getPathHash());
+                add(token.isRightJustified());
+            }
+        }
+
+        void add(final boolean b)
+        {
+            add(b ? 1 : 0);
+        }
+
+        void add(final int i)
+        {
+            fp.add(i);
+            ints[nInts++] = i;
+        }
     }
 
     private int typeCheckDepth = 0;
@@ -448,9 +448,7 @@ public final class ExpressionParser
 //            super.visitMethodCallExpression(psiMethodCallExpression); // todo
             return ;
         }
-        final ColumnSequenceNodeType method_calls = ColumnSequenceNodeType.getMethodCallCSNT(
-                psiMethodCallExpression.getMethodExpression().getText(),
-                settings.method_call_similarity_threshold.get        () );
+        final ColumnSequenceNodeType method_calls = getMethodCallCSNT(psiMethodCallExpression.getMethodExpression().getText());
         final ColumnSequence         seq          = expressionChoice.findOrAppend           (method_calls);
         if (seq.findTokenColumn(AlignableColumnNodeType.METHOD_NAME) == null)
         {
@@ -35,14 +35,14 @@ import com.wrq.tabifier.settings.TabifierSettings;
 public class MethodParser
         extends NestedParser
 {
-    private final ColumnChoice        parent;
-    private final ColumnSequence      methodDeclListSequence;
-    private final ColumnChoice        annotations;
-    private final ModifierTokenColumn modifiers;
-    private final TokenColumn         types;
-    private final TokenColumn         names;
-    private final ColumnSequence      parameterDecls;
-    private final TokenColumn         semicolons;
+    private final ColumnChoice                    parent;
+    private final MethodDeclarationColumnSequence methodDeclListSequence;
+    private final ColumnChoice                    annotations;
+    private final ModifierTokenColumn             modifiers;
+    private final TokenColumn                     types;
+    private final TokenColumn                     names;
+    private final ColumnSequence                  parameterDecls;
+    private final TokenColumn                     semicolons;
 
     public MethodParser(final ColumnChoice parent,
                         final CodeStyleSettings codeStyleSettings,
@@ -51,23 +51,14 @@ public class MethodParser
     {
         super(documentParser, codeStyleSettings, settings, documentParser.tab_size);
         this.parent = parent;
-        methodDeclListSequence = parent.findOrAppend(ColumnSequenceNodeType. METHOD_DECLARATION_PARAMETERS);
-        if (methodDeclListSequence.findModifierTokenColumn(AlignableColumnNodeType.ASSIGNMENT_MODIFIERS) == null)
-        {
-            methodDeclListSequence.appendChoiceColumn       (settings.align_annotations, AlignableColumnNodeType.ANNOTATIONS        );
-            methodDeclListSequence.appendModifierTokenColumn(settings.align_modifiers                                               );
-            methodDeclListSequence.appendTokenColumn        (settings.align_variable_types, AlignableColumnNodeType.VARTYPES        );
-            methodDeclListSequence.appendTokenColumn        (settings.align_variable_names, AlignableColumnNodeType.VARNAMES        );
-            methodDeclListSequence.appendChoiceColumn       (settings.align_method_decl_open_parend, AlignableColumnNodeType.PARAMS );
-            methodDeclListSequence.appendTokenColumn        (settings.align_semicolons, AlignableColumnNodeType.STATEMENT_SEMICOLONS);
-        }
-        annotations    = methodDeclListSequence.findColumnChoice(AlignableColumnNodeType.ANNOTATIONS);
-        modifiers      = methodDeclListSequence.findModifierTokenColumn(AlignableColumnNodeType.ASSIGNMENT_MODIFIERS);
-        types          = methodDeclListSequence.findTokenColumn(AlignableColumnNodeType.VARTYPES            );
-        names          = methodDeclListSequence.findTokenColumn(AlignableColumnNodeType.VARNAMES            );
-        ColumnChoice c = methodDeclListSequence.findColumnChoice(AlignableColumnNodeType.PARAMS             );
-        parameterDecls = c.findOrAppend(ColumnSequenceNodeType.PARAMLIST);
-        semicolons     = methodDeclListSequence.findTokenColumn(AlignableColumnNodeType.STATEMENT_SEMICOLONS);
+        methodDeclListSequence = (MethodDeclarationColumnSequence)
+                parent.findOrAppend(ColumnSequenceNodeType.METHOD_DECLARATION_PARAMETERS);
+        annotations    = methodDeclListSequence.getAnnotations   ();
+        modifiers      = methodDeclListSequence.getModifiers     ();
+        types          = methodDeclListSequence.getTypes         ();
+        names          = methodDeclListSequence.getNames         ();
+        parameterDecls = methodDeclListSequence.getParameterDecls();
+        semicolons     = methodDeclListSequence.getSemicolons    ();
     }
 
     public final void visitMethod(final PsiMethod psiMethod)
@@ -151,10 +142,7 @@ public class MethodParser
         ColumnChoice choice;
         if (psiCodeBlock.getText().indexOf('\n') < 0)  {
             // this is a horizontal code block.  Place the block after the parameter list.
-            if (methodDeclListSequence.findColumnChoice(AlignableColumnNodeType.CODE_BLOCK) == null) {
-                methodDeclListSequence.appendChoiceColumn(settings.align_code_block, AlignableColumnNodeType.CODE_BLOCK);
-            }
-            choice = methodDeclListSequence.findColumnChoice(AlignableColumnNodeType.CODE_BLOCK);
+            choice = methodDeclListSequence.getCodeBlock();
         }
         else {
             choice = parent;
@@ -26,6 +26,7 @@ import com.intellij.psi.codeStyle.CodeStyleSettings;
 import com.wrq.tabifier.parse.TokenColumn;
 import com.wrq.tabifier.parse.LineGroup;
 import com.wrq.tabifier.parse.ColumnChoice;
+import com.wrq.tabifier.parse.ColumnSequenceNodeType;
 import com.wrq.tabifier.parse.AlignableToken;
 import com.wrq.tabifier.settings.TabifierSettings;
 
@@ -36,6 +37,11 @@ public abstract class NestedParser
         extends JavaRecursiveElementVisitor
 {
     private final NestedParser      superParser;
+    /**
+     * the outermost parser of this run, which owns the current line, line group and indent state.  Nested parsers
+     * call it directly rather than forwarding each request up the chain of super parsers one level at a time.
+     */
+    private final DocumentParser    runContext;
     final         CodeStyleSettings codeStyleSettings;
     final         TabifierSettings  settings;
     final         int               tab_size;
@@ -48,8 +54,12 @@ public abstract class NestedParser
                            final int               tab_size          )
     {
         this.superParser       = superParser;
+        this.runContext        = superParser == null ? (DocumentParser) this : superParser.runContext;
         this.codeStyleSettings = codeStyleSettings;
-        this.settings          = settings;
+        /**
+         * the outermost parser works from a read-only copy of the settings, which all nested parsers then share.
+         */
+        this.settings          = superParser == null ? (TabifierSettings) settings.frozenCopy() : settings;
         this.tab_size          = tab_size;
     }
 
@@ -65,12 +75,12 @@ public abstract class NestedParser
 
     AlignableToken addToken(final PsiElement element, final TokenColumn tokenColumn)
     {
-        return superParser.addToken(element, tokenColumn);
+        return runContext.addToken(element, tokenColumn);
     }
 
     AlignableToken addToken(final AlignableToken token, final TokenColumn tokenColumn)
     {
-        return superParser.addToken(token, tokenColumn);
+        return runContext.addToken(token, tokenColumn);
     }
 
     public void visitReferenceExpression(final PsiReferenceExpression psiReferenceExpression)
@@ -86,38 +96,50 @@ public abstract class NestedParser
 
     void scheduleAlignment(final String reason)
     {
-        superParser.scheduleAlignment(reason);
+        runContext.scheduleAlignment(reason);
     }
 
     void bumpIndentLevel(final PsiJavaToken token)
     {
-        superParser.bumpIndentLevel(token);
+        runContext.bumpIndentLevel(token);
     }
 
     void reduceIndentLevel(final PsiJavaToken token)
     {
-        superParser.reduceIndentLevel(token);
+        runContext.reduceIndentLevel(token);
     }
 
     protected void suspendStatementTypeChecking()
     {
-        superParser.suspendStatementTypeChecking();
+        runContext.suspendStatementTypeChecking();
     }
 
     protected void resumeStatementTypeChecking()
     {
-        superParser.resumeStatementTypeChecking();
+        runContext.resumeStatementTypeChecking();
     }
 
     void setStatementType(final LineGroup.LineType type)
     {
-        superParser.setStatementType(type);
+        runContext.setStatementType(type);
     }
 
+    /**
+     * Forwarded one level at a time, since a nested ClassParser supplies the column for any anonymous class within it.
+     */
     ColumnChoice getClassColumn()
     {
         return superParser.getClassColumn();
     }
+    /**
+     * @return the node type of the column sequence for method calls similar to the given method name, according to
+     *         the method call similarity threshold.
+     */
+    final ColumnSequenceNodeType getMethodCallCSNT(final String methodName)
+    {
+        return runContext.getMethodCallTypes().get(methodName);
+    }
+
     /**
      * Utility routine to add requisite spaces before and/or after comma.
      * @param comma PsiElement which contains a comma.
@@ -133,12 +155,12 @@ public abstract class NestedParser
 
     void adjustIndentBias(final int adjustment)
     {
-        superParser.adjustIndentBias(adjustment);
+        runContext.adjustIndentBias(adjustment);
     }
 
     boolean isCurrentLineBlank()
     {
-        return superParser.isCurrentLineBlank();
+        return runContext.isCurrentLineBlank();
     }
     /**
      * if a newline character has been seen prior to the token being handled, mark it as belonging to a new line
@@ -176,11 +198,11 @@ public abstract class NestedParser
 
     AlignableToken addMultilineElement(final PsiElement element, final TokenColumn column)
     {
-        return superParser.addMultilineElement(element, column);
+        return runContext.addMultilineElement(element, column);
     }
 
     void handleComment(PsiComment comment)
     {
-        superParser.handleComment(comment);
+        runContext.handleComment(comment);
     }
 }
@@ -57,25 +57,14 @@ public final class NewExpressionParser
     {
         super(documentParser, codeStyleSettings, settings, documentParser.tab_size);
         this.nestingLevel = nestingLevel;
-        final ColumnSequence seq = expressionChoice.findOrAppend(ColumnSequenceNodeType.NEW_EXPRESSION);
-        if (seq.findTokenColumn(AlignableColumnNodeType.NEW_TOKEN) == null)
-        {
-            seq.appendTokenColumn (settings.align_terms, AlignableColumnNodeType.NEW_TOKEN               );
-            seq.appendChoiceColumn(settings.align_new_object, AlignableColumnNodeType.REFERENCE_ELEMENT);
-            ColumnChoice   re   = seq.findColumnChoice(AlignableColumnNodeType.REFERENCE_ELEMENT);
-            ColumnSequence cseq = re.findOrAppend(ColumnSequenceNodeType.CLASS_SEQ);
-            cseq.appendTokenColumn (settings.align_new_object, AlignableColumnNodeType.ARRAY_TYPE );
-            cseq.appendTokenColumn (settings.align_braces, AlignableColumnNodeType.LEFT_BRACE       );
-            cseq.appendTokenColumn (settings.align_braces, AlignableColumnNodeType.RIGHT_BRACE      );
-            cseq.appendChoiceColumn(settings.align_braces, AlignableColumnNodeType.ARRAY_INITIALIZER);
-        }
-        newToken         = seq.findTokenColumn(AlignableColumnNodeType.NEW_TOKEN        );
-        referenceElement = seq.findColumnChoice(AlignableColumnNodeType.REFERENCE_ELEMENT);
-        ColumnSequence cseq = referenceElement.findOrAppend(ColumnSequenceNodeType.CLASS_SEQ);
-        arrayType        = cseq.findTokenColumn(AlignableColumnNodeType.ARRAY_TYPE       );
-        leftBrace = cseq.findTokenColumn(AlignableColumnNodeType.LEFT_BRACE       );
-        rightBrace = cseq.findTokenColumn(AlignableColumnNodeType.RIGHT_BRACE      );
-        arrayInitializer = cseq.findColumnChoice(AlignableColumnNodeType.ARRAY_INITIALIZER);
+        final NewExpressionColumnSequence seq =
+                (NewExpressionColumnSequence) expressionChoice.findOrAppend(ColumnSequenceNodeType.NEW_EXPRESSION);
+        newToken         = seq.getNewToken        ();
+        referenceElement = seq.getReferenceElement();
+        arrayType        = seq.getArrayType       ();
+        leftBrace        = seq.getLeftBrace       ();
+        rightBrace       = seq.getRightBrace      ();
+        arrayInitializer = seq.getArrayInitializer();
     }
 
     public final void visitNewExpression(final PsiNewExpression psiNewExpression)
@@ -146,9 +135,7 @@ public final class NewExpressionParser
                     addToken(child, arrayType);
                     continue;
                 }
-                final ColumnSequenceNodeType method_calls = ColumnSequenceNodeType.getMethodCallCSNT(
-                        child.getText(),
-                        settings.method_call_similarity_threshold.get());
+                final ColumnSequenceNodeType method_calls = getMethodCallCSNT(child.getText());
                 final ColumnSequence         seq          = referenceElement.findOrAppend(method_calls);
                 if (seq.findTokenColumn(AlignableColumnNodeType.METHOD_NAME) == null)
                 {
@@ -58,26 +58,16 @@ public class VariableParser
         /**
          * Add a ColumnSequence node for statements to the column choice passed to us.
          */
-        final ColumnSequence myNode = currentCodeStatementColumnNode.findOrAppend(ColumnSequenceNodeType.DECLARATION);
-        if (myNode.findModifierTokenColumn(AlignableColumnNodeType.ASSIGNMENT_MODIFIERS) == null)
-        {
-            myNode.appendChoiceColumn       (settings.align_annotations, AlignableColumnNodeType.ANNOTATIONS                  );
-            myNode.appendModifierTokenColumn(settings.align_modifiers                                                         );
-            myNode.appendTokenColumn        (settings.align_variable_types, AlignableColumnNodeType.VARTYPES                  );
-            myNode.appendTokenColumn        (settings.align_variable_names, AlignableColumnNodeType.VARNAMES                  );
-            myNode.appendTokenColumn        (settings.align_assignment_operators, AlignableColumnNodeType.ASSIGNMENT_OPERATORS);
-            myNode.appendChoiceColumn       (settings.align_terms, AlignableColumnNodeType.TERMS                              );
-            myNode.appendTokenColumn        (settings.align_commas, AlignableColumnNodeType.COMMAS                            );
-            myNode.appendTokenColumn        (settings.align_semicolons, AlignableColumnNodeType.STATEMENT_SEMICOLONS          );
-        }
-        annotations         = myNode.findColumnChoice       (AlignableColumnNodeType.ANNOTATIONS         );
-        modifiers           = myNode.findModifierTokenColumn(AlignableColumnNodeType.ASSIGNMENT_MODIFIERS);
-        types               = myNode.findTokenColumn        (AlignableColumnNodeType.VARTYPES            );
-        names               = myNode.findTokenColumn        (AlignableColumnNodeType.VARNAMES            );
-        assignmentOperators = myNode.findTokenColumn        (AlignableColumnNodeType.ASSIGNMENT_OPERATORS);
-        expressions         = myNode.findColumnChoice       (AlignableColumnNodeType.TERMS               );
-        commas              = myNode.findTokenColumn        (AlignableColumnNodeType.COMMAS              );
-        semicolons          = myNode.findTokenColumn        (AlignableColumnNodeType.STATEMENT_SEMICOLONS);
+        final DeclarationColumnSequence myNode =
+                (DeclarationColumnSequence) currentCodeStatementColumnNode.findOrAppend(ColumnSequenceNodeType.DECLARATION);
+        annotations         = myNode.getAnnotations        ();
+        modifiers           = myNode.getModifiers          ();
+        types               = myNode.getTypes              ();
+        names               = myNode.getNames              ();
+        assignmentOperators = myNode.getAssignmentOperators();
+        expressions         = myNode.getTerms              ();
+        commas              = myNode.getCommas             ();
+        semicolons          = myNode.getSemicolons         ();
     }
 
     boolean handleDocComment(final PsiVariable psiVariable)
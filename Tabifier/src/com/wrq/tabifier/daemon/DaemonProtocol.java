@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.tabifier.daemon;
+
+import com.wrq.tabifier.cache.TabifyEdit;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wire format shared by TabifierDaemon and TabifierClient.  A client opens a connection with MAGIC and the daemon's
+ * token, then sends any number of requests, each answered before the next is read:
+ * <pre>
+ * request:  path (UTF), content (STRING), start offset (int), end offset (int; -1 for the end of the content)
+ * response: OK (int), edit count (int), then per edit: start (int), end (int), replacement text (STRING)
+ *        or ERROR (int), message (UTF)
+ * </pre>
+ * STRING is an int byte count followed by that many bytes of UTF-8, since DataOutput.writeUTF() is limited to 64K.
+ * Edits are in descending order of offset, as returned by TabifierEngine.format().
+ */
+final class DaemonProtocol
+{
+    static final int MAGIC      = 0x54414246;           // "TABF"
+    static final int OK         = 0;
+    static final int ERROR      = 1;
+    /** longest string accepted, so that a stray connection cannot make the daemon allocate without bound. */
+    static final int MAX_STRING = 256 * 1024 * 1024;
+
+    private DaemonProtocol()
+    {
+    }
+
+    static void writeString(final DataOutputStream out, final String s) throws IOException
+    {
+        final byte[] bytes = s.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(final DataInputStream in) throws IOException
+    {
+        final int length = in.readInt();
+        if (length < 0 || length > MAX_STRING)
+        {
+            throw new IOException("bad string length " + length);
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    static void writeEdits(final DataOutputStream out, final List<TabifyEdit> edits) throws IOException
+    {
+        out.writeInt(OK);
+        out.writeInt(edits.size());
+        for (TabifyEdit edit : edits)
+        {
+            out.writeInt(edit.getStartOffset());
+            out.writeInt(edit.getEndOffset());
+            writeString(out, edit.getText());
+        }
+    }
+
+    /**
+     * @throws IOException carrying the daemon's message if it reported an error.
+     */
+    static List<TabifyEdit> readEdits(final DataInputStream in) throws IOException
+    {
+        final int status = in.readInt();
+        if (status != OK)
+        {
+            throw new IOException("tabifier daemon: " + in.readUTF());
+        }
+        final int              count  = in.readInt();
+        final List<TabifyEdit> result = new ArrayList<TabifyEdit>(Math.min(count, 1024));
+        for (int i = 0; i < count; i++)
+        {
+            final int start = in.readInt();
+            final int end   = in.readInt();
+            result.add(new TabifyEdit(start, end, readString(in)));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.tabifier.daemon;
+
+import com.wrq.tabifier.cache.TabifyEdit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Client of a TabifierDaemon, for use from pre-commit hooks and build scripts.  Depends only on the JDK and
+ * TabifyEdit, so needs none of IDEA on its class path.  One connection may carry any number of requests; a client is
+ * not safe for use by several threads at once.
+ * <p/>
+ * Run as a program, it tabifies the named files in place:
+ * <pre>
+ * java com.wrq.tabifier.daemon.TabifierClient [-check] [-time] &lt;port file&gt; &lt;file&gt;...
+ * </pre>
+ * With -check, files are not written; their names are printed if they need tabifying, and the exit status is 2.
+ * With -time, the time taken by each request is printed.  Files are read and written as UTF-8; Windows line
+ * separators are sent to the daemon as newlines and restored afterward.
+ */
+public final class TabifierClient
+{
+    private final Socket           socket;
+    private final DataInputStream  in;
+    private final DataOutputStream out;
+
+    /**
+     * Connects to the daemon on the loopback interface.
+     *
+     * @param port  port the daemon listens on.
+     * @param token token written by the daemon to its port file.
+     */
+    public TabifierClient(final int port, final String token) throws IOException
+    {
+        socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setTcpNoDelay(true);
+        in  = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        out.writeInt(DaemonProtocol.MAGIC);
+        out.writeUTF(token);
+    }
+
+    /**
+     * Connects to the daemon which wrote the given port file.
+     */
+    public static TabifierClient connect(final File portFile) throws IOException
+    {
+        final String[] fields = new String(Files.readAllBytes(portFile.toPath()), "UTF-8").trim().split(" ");
+        if (fields.length != 2)
+        {
+            throw new IOException("malformed daemon port file " + portFile);
+        }
+        try
+        {
+            return new TabifierClient(Integer.parseInt(fields[0]), fields[1]);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IOException("malformed daemon port file " + portFile);
+        }
+    }
+
+    /**
+     * @param path    path of the file, used only in the daemon's log.
+     * @param content Java source, with newline line separators.
+     * @param start   beginning of the range to tabify.
+     * @param end     end of the range to tabify, or -1 for the end of the content.
+     * @return replacements of changed lines, in descending order of offset.
+     */
+    public List<TabifyEdit> format(final String path, final String content, final int start, final int end)
+            throws IOException
+    {
+        out.writeUTF(path);
+        DaemonProtocol.writeString(out, content);
+        out.writeInt(start);
+        out.writeInt(end);
+        out.flush();
+        return DaemonProtocol.readEdits(in);
+    }
+
+    /**
+     * @return the given Java source, tabified in full.
+     */
+    public String format(final String path, final String content) throws IOException
+    {
+        final StringBuilder result = new StringBuilder(content);
+        for (TabifyEdit edit : format(path, content, 0, -1))
+        {
+            result.replace(edit.getStartOffset(), edit.getEndOffset(), edit.getText());
+        }
+        return result.toString();
+    }
+
+    public void close() throws IOException
+    {
+        socket.close();
+    }
+
+    public static void main(final String[] args) throws IOException
+    {
+        boolean check = false;
+        boolean time  = false;
+        int     i     = 0;
+        for (; i < args.length && args[i].startsWith("-"); i++)
+        {
+            if (args[i].equals("-check"))
+            {
+                check = true;
+            }
+            else if (args[i].equals("-time"))
+            {
+                time = true;
+            }
+            else
+            {
+                i = args.length;                        // unknown option: fall through to usage
+            }
+        }
+        if (i >= args.length)
+        {
+            System.err.println("usage: TabifierClient [-check] [-time] <port file> <file>...");
+            System.exit(1);
+        }
+        final TabifierClient client     = connect(new File(args[i++]));
+              boolean        misaligned = false;
+        try
+        {
+            for (; i < args.length; i++)
+            {
+                final File    file    = new File(args[i]);
+                final String  text    = new String(Files.readAllBytes(file.toPath()), "UTF-8");
+                final boolean crlf    = text.contains("\r\n");
+                final String  content = crlf ? text.replace("\r\n", "\n") : text;
+                final long    start   = System.nanoTime();
+                final String  result  = client.format(file.getPath(), content);
+                if (time)
+                {
+                    System.err.println(file + ": " + (System.nanoTime() - start) / 1000000 + " ms");
+                }
+                if (!result.equals(content))
+                {
+                    misaligned = true;
+                    if (check)
+                    {
+                        System.out.println(file);
+                    }
+                    else
+                    {
+                        Files.write(file.toPath(), (crlf ? result.replace("\n", "\r\n") : result).getBytes("UTF-8"));
+                    }
+                }
+            }
+        }
+        finally
+        {
+            client.close();
+        }
+        System.exit(check && misaligned ? 2 : 0);
+    }
+}
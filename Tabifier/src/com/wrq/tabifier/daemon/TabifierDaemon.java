@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.tabifier.daemon;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.codeStyle.CodeStyleSettings;
+import com.wrq.tabifier.TabifierActionHandler;
+import com.wrq.tabifier.TabifierEngine;
+import com.wrq.tabifier.cache.TabifyEdit;
+import com.wrq.tabifier.settings.TabifierSettings;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves tabifier requests from other processes over a loopback socket, so that a pre-commit hook tabifying a few
+ * files pays for a connection rather than for starting and warming up a JVM.  The daemon runs inside IDEA, where the
+ * Psi needed by the tabifier is available, and keeps an engine built from the current settings; it is rebuilt only
+ * when the tabifier settings or the code style settings change.
+ * <p/>
+ * On start, the port and a random token are written to a port file readable by the user; a client must present the
+ * token before its requests are served.  See DaemonProtocol for the wire format and TabifierClient for a client.
+ * The daemon stops itself after a period without requests.
+ */
+public final class TabifierDaemon
+{
+    /** system property which, if "true", starts the daemon with IDEA. */
+    public static final String ENABLED_PROPERTY     = "tabifier.daemon";
+    /** system property giving the port to listen on; 0 or absent for any free port. */
+    public static final String PORT_PROPERTY        = "tabifier.daemon.port";
+    /** system property giving the minutes without requests after which the daemon stops. */
+    public static final String IDLE_PROPERTY        = "tabifier.daemon.idle.minutes";
+    /** name of the port file in the IDEA system directory. */
+    public static final String PORT_FILE_NAME       = "tabifier-daemon.port";
+    public static final int    DEFAULT_IDLE_MINUTES = 60;
+    /** how often the accept loop wakes to check for idleness. */
+    private static final int   POLL_MILLIS          = 1000;
+    /** time a client has to present its token after connecting, unless the idle time is shorter. */
+    private static final int   HANDSHAKE_MILLIS     = 5000;
+
+    private static final Logger                       logger      =
+            Logger.getLogger("com.wrq.tabifier.daemon.TabifierDaemon");
+    private        final Computable<TabifierSettings> settings;
+    private        final Project                      project;
+    private        final long                         idleMillis;
+    private        final File                         portFile;
+    private        final ServerSocket                 server;
+    private        final String                       token;
+    private        final AtomicInteger                connections = new AtomicInteger();
+    private        final AtomicInteger                requests    = new AtomicInteger();
+    private volatile     long                         lastActive  = System.currentTimeMillis();
+    private volatile     boolean                      stopped;
+    private              TabifierEngine               engine;
+
+    /**
+     * Opens the server socket, writes the port file and starts accepting connections on a daemon thread.
+     *
+     * @param settings   supplies the current tabifier settings; each request uses their values at the time.
+     * @param project    project whose Psi facilities parse the requested sources.
+     * @param port       port to listen on, or 0 for any free port.
+     * @param idleMillis time without requests or open connections after which the daemon stops.
+     * @param portFile   file to which the port and token are written; deleted when the daemon stops.
+     */
+    public static TabifierDaemon start(final Computable<TabifierSettings> settings,
+                                       final Project project,
+                                       final int port,
+                                       final long idleMillis,
+                                       final File portFile) throws IOException
+    {
+        final TabifierDaemon daemon = new TabifierDaemon(settings, project, port, idleMillis, portFile);
+        final Thread         thread = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                daemon.acceptLoop();
+            }
+        }, "TabifierDaemon");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("tabifier daemon listening on port " + daemon.getPort());
+        return daemon;
+    }
+
+    private TabifierDaemon(final Computable<TabifierSettings> settings,
+                           final Project project,
+                           final int port,
+                           final long idleMillis,
+                           final File portFile) throws IOException
+    {
+        this.settings   = settings;
+        this.project    = project;
+        this.idleMillis = idleMillis;
+        this.portFile   = portFile;
+        final byte[] random = new byte[16];
+        new SecureRandom().nextBytes(random);
+        final StringBuilder sb = new StringBuilder();
+        for (byte b : random)
+        {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        token  = sb.toString();
+        server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        server.setSoTimeout(POLL_MILLIS);
+        try
+        {
+            writePortFile();
+        }
+        catch (IOException e)
+        {
+            server.close();
+            throw e;
+        }
+    }
+
+    public int getPort()
+    {
+        return server.getLocalPort();
+    }
+
+    /**
+     * @return token a client must present; also written to the port file.
+     */
+    public String getToken()
+    {
+        return token;
+    }
+
+    /**
+     * @return number of requests served so far.
+     */
+    public int getRequestCount()
+    {
+        return requests.get();
+    }
+
+    public boolean isStopped()
+    {
+        return stopped;
+    }
+
+    /**
+     * Stops accepting connections and deletes the port file.  Connections already open are served until closed by
+     * their clients.
+     */
+    public void stop()
+    {
+        if (stopped)
+        {
+            return;
+        }
+        stopped = true;
+        try
+        {
+            server.close();
+        }
+        catch (IOException e)
+        {
+            logger.debug("closing daemon socket", e);
+        }
+        if (portFile.exists() && !portFile.delete())
+        {
+            logger.warn("cannot delete " + portFile);
+        }
+        logger.info("tabifier daemon stopped after " + requests.get() + " requests");
+    }
+
+    /**
+     * Writes the port file under a temporary name and renames it into place, so that a client never reads a partly
+     * written file.  Where the file system supports POSIX permissions, the temporary file is created readable by its
+     * owner only, so the token is never exposed to other users, not even briefly.
+     */
+    private void writePortFile() throws IOException
+    {
+        final File dir = portFile.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs())
+        {
+            throw new IOException("cannot create directory for daemon port file: " + dir);
+        }
+        final Path target = portFile.toPath();
+        final Path temp;
+        if (Files.getFileStore(dir.toPath()).supportsFileAttributeView("posix"))
+        {
+            temp = Files.createTempFile(dir.toPath(), PORT_FILE_NAME, ".tmp", PosixFilePermissions.asFileAttribute(
+                    EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE)));
+        }
+        else
+        {
+            temp = Files.createTempFile(dir.toPath(), PORT_FILE_NAME, ".tmp");
+            temp.toFile().setReadable(false, false);
+            temp.toFile().setReadable(true, true);
+        }
+        try
+        {
+            Files.write(temp, (getPort() + " " + token + "\n").getBytes("UTF-8"));
+            try
+            {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void acceptLoop()
+    {
+        while (!stopped)
+        {
+            final Socket socket;
+            try
+            {
+                socket = server.accept();
+            }
+            catch (SocketTimeoutException e)
+            {
+                if (connections.get() == 0 && System.currentTimeMillis() - lastActive >= idleMillis)
+                {
+                    logger.info("tabifier daemon idle for " + idleMillis / 1000 + " seconds");
+                    stop();
+                }
+                continue;
+            }
+            catch (IOException e)
+            {
+                if (!stopped)
+                {
+                    logger.warn("tabifier daemon cannot accept connections", e);
+                    stop();
+                }
+                return;
+            }
+            connections.incrementAndGet();
+            lastActive = System.currentTimeMillis();
+            ApplicationManager.getApplication().executeOnPooledThread(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        serve(socket);
+                    }
+                    finally
+                    {
+                        connections.decrementAndGet();
+                        lastActive = System.currentTimeMillis();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Answers the requests of one connection until the client closes it, or leaves it unused for the idle time.  A
+     * connection left open must not keep the daemon from stopping, nor hold a pooled thread for good.
+     */
+    private void serve(final Socket socket)
+    {
+        try
+        {
+            final DataInputStream  in  = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            socket.setSoTimeout((int) Math.min(HANDSHAKE_MILLIS, idleMillis));
+            if (in.readInt() != DaemonProtocol.MAGIC || !token.equals(in.readUTF()))
+            {
+                logger.warn("tabifier daemon rejected a connection without a valid token");
+                return;
+            }
+            socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, idleMillis));
+            while (true)
+            {
+                final String path;
+                try
+                {
+                    path = in.readUTF();
+                }
+                catch (EOFException e)
+                {
+                    return;                                         // client is done
+                }
+                final String           content = DaemonProtocol.readString(in);
+                final int              start   = in.readInt();
+                final int              end     = in.readInt();
+                      List<TabifyEdit> edits   = null;
+                      RuntimeException failure = null;
+                try
+                {
+                    edits = format(content, start, end < 0 ? content.length() : end);
+                }
+                catch (RuntimeException e)
+                {
+                    logger.info("tabifier daemon failed to tabify " + path, e);
+                    failure = e;
+                }
+                /** count the request before answering it, so that a client seeing the answer sees the count too. */
+                requests.incrementAndGet();
+                lastActive = System.currentTimeMillis();
+                if (failure == null)
+                {
+                    DaemonProtocol.writeEdits(out, edits);
+                }
+                else
+                {
+                    out.writeInt(DaemonProtocol.ERROR);
+                    out.writeUTF(String.valueOf(failure));
+                }
+                out.flush();
+            }
+        }
+        catch (SocketTimeoutException e)
+        {
+            logger.debug("tabifier daemon closed an idle connection");
+        }
+        catch (IOException e)
+        {
+            logger.debug("tabifier daemon connection closed", e);
+        }
+        finally
+        {
+            try
+            {
+                socket.close();
+            }
+            catch (IOException e)
+            {
+                // ignore
+            }
+        }
+    }
+
+    private List<TabifyEdit> format(final String content, final int start, final int end)
+    {
+        final TabifierEngine engine = getEngine();
+        return ApplicationManager.getApplication().runReadAction(new Computable<List<TabifyEdit>>()
+        {
+            public List<TabifyEdit> compute()
+            {
+                return engine.format(project, content, new TextRange(start, end));
+            }
+        });
+    }
+
+    /**
+     * @return an engine for the current tabifier and code style settings, rebuilt if either has changed since the
+     *         last request.
+     */
+    private synchronized TabifierEngine getEngine()
+    {
+        final TabifierSettings  current           = settings.compute();
+        final CodeStyleSettings codeStyleSettings = TabifierActionHandler.getCodeStyleSettings(project);
+        if (engine == null ||
+            engine.getContextFingerprint() != TabifierEngine.contextFingerprint(current, codeStyleSettings))
+        {
+            engine = TabifierEngine.create(current, codeStyleSettings);
+        }
+        return engine;
+    }
+}
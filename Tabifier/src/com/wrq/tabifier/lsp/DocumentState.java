@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.tabifier.lsp;
+
+import com.wrq.tabifier.StreamingTabifier;
+import com.wrq.tabifier.cache.TabifyEdit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * What the language server knows of one open document: its text, kept with newline line separators, the offsets at
+ * which its lines start, and the cuts at which no group of lines can continue.  Cuts are the same boundaries that
+ * StreamingTabifier chunks a file at: the start of the file, the end of a type's header, the end of each member of a
+ * top level type, and the end of each top level type.  They are found once per version of the text and reused by
+ * every formatting request, so that a small range of a large document is tabified by parsing only the members
+ * around it.
+ */
+final class DocumentState
+{
+    private String  text;
+    private boolean crlf;
+    private int[]   lineStarts;
+    private Cut[]   cuts;
+
+    DocumentState(final String text)
+    {
+        setText(text);
+    }
+
+    void setText(final String text)
+    {
+        crlf       = text.contains("\r\n");
+        this.text  = crlf ? text.replace("\r\n", "\n") : text;
+        lineStarts = null;
+        cuts       = null;
+    }
+
+    /**
+     * Applies an incremental change.
+     */
+    void replace(final int start, final int end, final String newText)
+    {
+        final boolean wasCrlf = crlf;
+        setText(text.substring(0, start) + newText.replace("\r\n", "\n") + text.substring(end));
+        crlf = wasCrlf || newText.contains("\r\n");
+    }
+
+    String getText()
+    {
+        return text;
+    }
+
+    /**
+     * @return true if the client's text uses Windows line separators, which replacement text must use too.
+     */
+    boolean isCrlf()
+    {
+        return crlf;
+    }
+
+    /**
+     * @return offset of a position, clamped to the text.
+     */
+    int offset(final int line, final int character)
+    {
+        final int[] starts = getLineStarts();
+        if (line >= starts.length)
+        {
+            return text.length();
+        }
+        final int start = starts[Math.max(line, 0)];
+        final int end   = line + 1 < starts.length ? starts[line + 1] - 1 : text.length();
+        return Math.min(start + Math.max(character, 0), end);
+    }
+
+    int line(final int offset)
+    {
+        final int index = Arrays.binarySearch(getLineStarts(), offset);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    int character(final int offset)
+    {
+        return offset - getLineStarts()[line(offset)];
+    }
+
+    /**
+     * @return offset of the start of the line, or of the end of the text if there is no such line.
+     */
+    int lineStart(final int line)
+    {
+        final int[] starts = getLineStarts();
+        return line < starts.length ? starts[line] : text.length();
+    }
+
+    private int[] getLineStarts()
+    {
+        if (lineStarts == null)
+        {
+            int count = 1;
+            for (int i = 0; i < text.length(); i++)
+            {
+                if (text.charAt(i) == '\n') count++;
+            }
+            lineStarts = new int[count];
+            int line = 1;
+            for (int i = 0; i < text.length(); i++)
+            {
+                if (text.charAt(i) == '\n') lineStarts[line++] = i + 1;
+            }
+        }
+        return lineStarts;
+    }
+
+    /**
+     * @return the last cut at or before the offset.
+     */
+    int cutBefore(final int offset)
+    {
+        return cuts()[indexBefore(offset)].offset;
+    }
+
+    /**
+     * Returns the smallest piece of the document which contains the range and begins and ends at cuts, so that
+     * tabifying the range within the piece gives the same result as tabifying it within the whole document.
+     *
+     * @param start beginning of the range; should be at the beginning of a line.
+     * @param end   end of the range; should be at the beginning of a line or the end of the text.
+     * @return the piece, or null if the range is empty.
+     */
+    Window window(final int start, final int end)
+    {
+        if (end <= start)
+        {
+            return null;
+        }
+        final Cut[] c     = cuts();
+        final Cut   first = c[indexBefore(start)];
+              int   i     = indexBefore(end);
+        if (c[i].offset < end)
+        {
+            i++;
+        }
+        return new Window(text, first, c[i], start, end);
+    }
+
+    private int indexBefore(final int offset)
+    {
+        final Cut[] c  = cuts();
+              int   lo = 0;
+              int   hi = c.length - 1;
+        while (lo < hi)
+        {
+            final int mid = (lo + hi + 1) >>> 1;
+            if (c[mid].offset <= offset)
+            {
+                lo = mid;
+            }
+            else
+            {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    private Cut[] cuts()
+    {
+        if (cuts == null)
+        {
+            final List<Cut>                        result    = new ArrayList<Cut>();
+            final StreamingTabifier.BraceScanner   scanner   = new StreamingTabifier.BraceScanner();
+                  int                              typeStart = 0;
+                  int                              headerEnd = -1;
+            result.add(new Cut(0, 0, -1));
+            for (int i = 0; i < text.length(); i++)
+            {
+                final char c = text.charAt(i);
+                scanner.next(c);
+                if (c != '\n')
+                {
+                    continue;
+                }
+                switch (scanner.endLine())
+                {
+                    case StreamingTabifier.BraceScanner.BODY_START:
+                        if (headerEnd < 0)
+                        {
+                            headerEnd = i + 1;
+                            result.add(new Cut(i + 1, typeStart, headerEnd));
+                        }
+                        break;
+                    case StreamingTabifier.BraceScanner.MEMBER_END:
+                        if (headerEnd >= 0)
+                        {
+                            result.add(new Cut(i + 1, typeStart, headerEnd));
+                        }
+                        break;
+                    case StreamingTabifier.BraceScanner.TYPE_END:
+                        typeStart = i + 1;
+                        headerEnd = -1;
+                        result.add(new Cut(i + 1, typeStart, -1));
+                        break;
+                }
+            }
+            if (result.get(result.size() - 1).offset < text.length())
+            {
+                result.add(new Cut(text.length(), text.length(), -1));
+            }
+            cuts = result.toArray(new Cut[result.size()]);
+        }
+        return cuts;
+    }
+
+    /**
+     * A line at which a piece of the document may begin or end.  Within the body of a top level type, a piece is
+     * parsed after the type's header, text[typeStart, headerEnd), and followed by a closing brace.
+     */
+    private static final class Cut
+    {
+        private final int offset;
+        private final int typeStart;
+        private final int headerEnd;                            // -1 if not within the body of a type
+
+        Cut(final int offset, final int typeStart, final int headerEnd)
+        {
+            this.offset    = offset;
+            this.typeStart = typeStart;
+            this.headerEnd = headerEnd;
+        }
+
+        boolean isWithinType()
+        {
+            return headerEnd >= 0;
+        }
+    }
+
+    /**
+     * A piece of the document between two cuts, made into a source which parses on its own, and the range to tabify
+     * within that source.
+     */
+    static final class Window
+    {
+        private final String source;
+        private final int    prefixLength;
+        private final int    pieceStart;
+        private final int    pieceLength;
+        private final int    rangeStart;
+        private final int    rangeEnd;
+
+        private Window(final String text, final Cut first, final Cut last, final int start, final int end)
+        {
+            final String prefix = first.isWithinType() ? text.substring(first.typeStart, first.headerEnd) : "";
+            final String suffix = last.isWithinType() ? "}\n" : "";
+            source       = prefix + text.substring(first.offset, last.offset) + suffix;
+            prefixLength = prefix.length();
+            pieceStart   = first.offset;
+            pieceLength  = last.offset - first.offset;
+            rangeStart   = prefixLength + start - pieceStart;
+            rangeEnd     = prefixLength + end - pieceStart;
+        }
+
+        String getSource()
+        {
+            return source;
+        }
+
+        int getRangeStart()
+        {
+            return rangeStart;
+        }
+
+        int getRangeEnd()
+        {
+            return rangeEnd;
+        }
+
+        /**
+         * @param edits edits of the window's source.
+         * @return the same edits, in document offsets; any outside the piece are dropped.
+         */
+        List<TabifyEdit> toDocument(final List<TabifyEdit> edits)
+        {
+            final List<TabifyEdit> result = new ArrayList<TabifyEdit>(edits.size());
+            for (TabifyEdit edit : edits)
+            {
+                if (edit.getStartOffset() >= prefixLength && edit.getEndOffset() <= prefixLength + pieceLength)
+                {
+                    result.add(new TabifyEdit(edit.getStartOffset() - prefixLength + pieceStart,
+                                              edit.getEndOffset() - prefixLength + pieceStart,
+                                              edit.getText()));
+                }
+            }
+            return result;
+        }
+    }
+}
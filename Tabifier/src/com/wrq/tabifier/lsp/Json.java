@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.tabifier.lsp;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Just enough JSON for the language server protocol.  Objects are read as Maps, arrays as Lists, numbers as Long or
+ * Double, and the rest as String, Boolean or null; the same types (and any Number) are written.
+ */
+public final class Json
+{
+    private final String text;
+    private       int    pos;
+
+    private Json(final String text)
+    {
+        this.text = text;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the text is not a single JSON value.
+     */
+    public static Object parse(final String text)
+    {
+        final Json   json  = new Json(text);
+        final Object value = json.value();
+        json.skipWhitespace();
+        if (json.pos != text.length())
+        {
+            throw json.error("unexpected text after value");
+        }
+        return value;
+    }
+
+    public static String write(final Object value)
+    {
+        final StringBuilder sb = new StringBuilder();
+        write(sb, value);
+        return sb.toString();
+    }
+
+    private static void write(final StringBuilder sb, final Object value)
+    {
+        if (value == null)
+        {
+            sb.append("null");
+        }
+        else if (value instanceof String)
+        {
+            quote(sb, (String) value);
+        }
+        else if (value instanceof Number || value instanceof Boolean)
+        {
+            sb.append(value);
+        }
+        else if (value instanceof Map)
+        {
+            sb.append('{');
+            final Iterator<? extends Map.Entry<?, ?>> i = ((Map<?, ?>) value).entrySet().iterator();
+            while (i.hasNext())
+            {
+                final Map.Entry<?, ?> entry = i.next();
+                quote(sb, String.valueOf(entry.getKey()));
+                sb.append(':');
+                write(sb, entry.getValue());
+                if (i.hasNext()) sb.append(',');
+            }
+            sb.append('}');
+        }
+        else if (value instanceof List)
+        {
+            sb.append('[');
+            final Iterator<?> i = ((List<?>) value).iterator();
+            while (i.hasNext())
+            {
+                write(sb, i.next());
+                if (i.hasNext()) sb.append(',');
+            }
+            sb.append(']');
+        }
+        else
+        {
+            throw new IllegalArgumentException("cannot write " + value.getClass().getName() + " as JSON");
+        }
+    }
+
+    private static void quote(final StringBuilder sb, final String s)
+    {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++)
+        {
+            final char c = s.charAt(i);
+            switch (c)
+            {
+                case '"':  sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n");  break;
+                case '\r': sb.append("\\r");  break;
+                case '\t': sb.append("\\t");  break;
+                default:
+                    if (c < 0x20)
+                    {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    }
+                    else
+                    {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    private Object value()
+    {
+        skipWhitespace();
+        if (pos >= text.length())
+        {
+            throw error("unexpected end of text");
+        }
+        final char c = text.charAt(pos);
+        switch (c)
+        {
+            case '{': return object();
+            case '[': return array();
+            case '"': return string();
+            case 't': return literal("true", Boolean.TRUE);
+            case 'f': return literal("false", Boolean.FALSE);
+            case 'n': return literal("null", null);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9'))
+                {
+                    return number();
+                }
+                throw error("unexpected character '" + c + "'");
+        }
+    }
+
+    private Map<String, Object> object()
+    {
+        final Map<String, Object> result = new LinkedHashMap<String, Object>();
+        pos++;
+        skipWhitespace();
+        if (peek() == '}')
+        {
+            pos++;
+            return result;
+        }
+        while (true)
+        {
+            skipWhitespace();
+            if (peek() != '"')
+            {
+                throw error("expected member name");
+            }
+            final String name = string();
+            skipWhitespace();
+            expect(':');
+            result.put(name, value());
+            skipWhitespace();
+            if (peek() == ',')
+            {
+                pos++;
+                continue;
+            }
+            expect('}');
+            return result;
+        }
+    }
+
+    private List<Object> array()
+    {
+        final List<Object> result = new ArrayList<Object>();
+        pos++;
+        skipWhitespace();
+        if (peek() == ']')
+        {
+            pos++;
+            return result;
+        }
+        while (true)
+        {
+            result.add(value());
+            skipWhitespace();
+            if (peek() == ',')
+            {
+                pos++;
+                continue;
+            }
+            expect(']');
+            return result;
+        }
+    }
+
+    private String string()
+    {
+        final StringBuilder sb = new StringBuilder();
+        pos++;
+        while (true)
+        {
+            if (pos >= text.length())
+            {
+                throw error("unterminated string");
+            }
+            final char c = text.charAt(pos++);
+            if (c == '"')
+            {
+                return sb.toString();
+            }
+            if (c != '\\')
+            {
+                sb.append(c);
+                continue;
+            }
+            if (pos >= text.length())
+            {
+                throw error("unterminated string");
+            }
+            final char e = text.charAt(pos++);
+            switch (e)
+            {
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    if (pos + 4 > text.length())
+                    {
+                        throw error("bad unicode escape");
+                    }
+                    try
+                    {
+                        sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                    }
+                    catch (NumberFormatException x)
+                    {
+                        throw error("bad unicode escape");
+                    }
+                    pos += 4;
+                    break;
+                default:  sb.append(e);    break;           // \" \\ \/
+            }
+        }
+    }
+
+    private Number number()
+    {
+        final int start = pos;
+        if (peek() == '-') pos++;
+        boolean integral = true;
+        while (pos < text.length())
+        {
+            final char c = text.charAt(pos);
+            if (c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-')
+            {
+                integral = false;
+            }
+            else if (c < '0' || c > '9')
+            {
+                break;
+            }
+            pos++;
+        }
+        final String s = text.substring(start, pos);
+        try
+        {
+            return integral ? (Number) Long.valueOf(s) : (Number) Double.valueOf(s);
+        }
+        catch (NumberFormatException e)
+        {
+            throw error("bad number " + s);
+        }
+    }
+
+    private Object literal(final String word, final Object value)
+    {
+        if (!text.startsWith(word, pos))
+        {
+            throw error("expected " + word);
+        }
+        pos += word.length();
+        return value;
+    }
+
+    private void expect(final char c)
+    {
+        if (peek() != c)
+        {
+            throw error("expected '" + c + "'");
+        }
+        pos++;
+    }
+
+    private char peek()
+    {
+        return pos < text.length() ? text.charAt(pos) : 0;
+    }
+
+    private void skipWhitespace()
+    {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos)))
+        {
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException error(final String message)
+    {
+        return new IllegalArgumentException(message + " at offset " + pos + " of JSON text");
+    }
+}
@@ -0,0 +1,428 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.tabifier.lsp;
+
+import com.wrq.tabifier.cache.TabifyEdit;
+import com.wrq.tabifier.daemon.TabifierClient;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Language server protocol front end of the tabifier, so that editors other than IDEA can align Java source the same
+ * way.  Implements textDocument/formatting, rangeFormatting and onTypeFormatting over JSON-RPC, with documents kept
+ * in full by didOpen, didChange and didClose.
+ * <p/>
+ * The tabifier needs IDEA's Psi, so the server does no tabifying itself; it passes each request to a Formatter.  Run
+ * as a program, it speaks the protocol on standard input and output and formats through a TabifierDaemon running in
+ * IDEA:
+ * <pre>
+ * java com.wrq.tabifier.lsp.TabifierLanguageServer &lt;daemon port file&gt;
+ * </pre>
+ * Each request sends the formatter only the piece of the document around the requested range, bounded by the cuts
+ * kept in DocumentState, rather than the whole document; a range of a few lines costs about the same in a large
+ * document as in a small one.
+ */
+public final class TabifierLanguageServer
+{
+    /**
+     * Tabifies a range of Java source.
+     */
+    public interface Formatter
+    {
+        /**
+         * @param path   path or URI of the document, for logging.
+         * @param source Java source, with newline line separators.
+         * @param start  beginning of the range to tabify.
+         * @param end    end of the range to tabify.
+         * @return edits of the source, in descending order of offset.
+         */
+        List<TabifyEdit> format(String path, String source, int start, int end) throws IOException;
+    }
+
+    private static final int PARSE_ERROR      = -32700;
+    private static final int METHOD_NOT_FOUND = -32601;
+    private static final int INVALID_PARAMS   = -32602;
+    private static final int INTERNAL_ERROR   = -32603;
+
+    private final Formatter                  formatter;
+    private final Map<String, DocumentState> documents = new HashMap<String, DocumentState>();
+    private       boolean                    shutdown;
+    private       OutputStream               out;
+
+    public TabifierLanguageServer(final Formatter formatter)
+    {
+        this.formatter = formatter;
+    }
+
+    /**
+     * Serves messages until an exit notification or the end of the input.  Open documents are kept between calls.
+     *
+     * @return exit code: 0 if exit followed shutdown, as the protocol asks; otherwise 1.
+     */
+    public int run(final InputStream in, final OutputStream out) throws IOException
+    {
+        this.out = out;
+        final InputStream input = new BufferedInputStream(in);
+              String      message;
+        while ((message = readMessage(input)) != null)
+        {
+            final Map request;
+            try
+            {
+                final Object parsed = Json.parse(message);
+                if (!(parsed instanceof Map))
+                {
+                    throw new IllegalArgumentException("message is not a JSON object");
+                }
+                request = (Map) parsed;
+            }
+            catch (IllegalArgumentException e)
+            {
+                send(error(null, PARSE_ERROR, e.getMessage()));
+                continue;
+            }
+            final Object  method    = request.get("method");
+            final boolean isRequest = request.containsKey("id");
+            if ("exit".equals(method))
+            {
+                return shutdown ? 0 : 1;
+            }
+            Map<String, Object> response;
+            try
+            {
+                response = result(request.get("id"), handle(String.valueOf(method), (Map) request.get("params")));
+            }
+            catch (ProtocolException e)
+            {
+                response = error(request.get("id"), e.code, e.getMessage());
+            }
+            catch (IOException e)
+            {
+                response = error(request.get("id"), INTERNAL_ERROR, String.valueOf(e.getMessage()));
+            }
+            catch (RuntimeException e)
+            {
+                response = error(request.get("id"), INVALID_PARAMS, String.valueOf(e));
+            }
+            if (isRequest)
+            {
+                send(response);
+            }
+        }
+        return 1;
+    }
+
+    private Object handle(final String method, final Map params) throws IOException, ProtocolException
+    {
+        if (method.equals("initialize"))
+        {
+            return initializeResult();
+        }
+        if (method.equals("shutdown"))
+        {
+            shutdown = true;
+            return null;
+        }
+        if (method.equals("textDocument/didOpen"))
+        {
+            final Map document = (Map) params.get("textDocument");
+            documents.put((String) document.get("uri"), new DocumentState((String) document.get("text")));
+            return null;
+        }
+        if (method.equals("textDocument/didChange"))
+        {
+            final DocumentState document = document(params);
+            for (Object o : (List) params.get("contentChanges"))
+            {
+                final Map change = (Map) o;
+                final Map range  = (Map) change.get("range");
+                if (range == null)
+                {
+                    document.setText((String) change.get("text"));
+                }
+                else
+                {
+                    document.replace(offset(document, (Map) range.get("start")),
+                                     offset(document, (Map) range.get("end")),
+                                     (String) change.get("text"));
+                }
+            }
+            return null;
+        }
+        if (method.equals("textDocument/didClose"))
+        {
+            documents.remove(uri(params));
+            return null;
+        }
+        if (method.equals("textDocument/formatting"))
+        {
+            final DocumentState document = document(params);
+            return format(uri(params), document, 0, document.getText().length());
+        }
+        if (method.equals("textDocument/rangeFormatting"))
+        {
+            /**
+             * extend the range to whole lines, as the editor action extends a selection.  A range ending at the
+             * beginning of a line does not include that line.
+             */
+            final DocumentState document  = document(params);
+            final Map           range     = (Map) params.get("range");
+            final int           startLine = number((Map) range.get("start"), "line");
+            final int           endLine   = number((Map) range.get("end"), "line");
+            final int           endChar   = number((Map) range.get("end"), "character");
+            return format(uri(params),
+                    document,
+                    document.lineStart(startLine),
+                    document.lineStart(endChar == 0 && endLine > startLine ? endLine : endLine + 1));
+        }
+        if (method.equals("textDocument/onTypeFormatting"))
+        {
+            /**
+             * tabify from the last cut before the line typed on through the end of that line, so that the line is
+             * aligned with the lines of its group above it.
+             */
+            final DocumentState document = document(params);
+            final int           line     = number((Map) params.get("position"), "line");
+            return format(uri(params),
+                    document,
+                    document.cutBefore(document.lineStart(line)),
+                    document.lineStart(line + 1));
+        }
+        throw new ProtocolException(METHOD_NOT_FOUND, "unsupported method " + method);
+    }
+
+    private static Map<String, Object> initializeResult()
+    {
+        final Map<String, Object> onType = new LinkedHashMap<String, Object>();
+        onType.put("firstTriggerCharacter", ";");
+        onType.put("moreTriggerCharacter", Arrays.asList("}"));
+        final Map<String, Object> capabilities = new LinkedHashMap<String, Object>();
+        capabilities.put("textDocumentSync", 2);                   // incremental
+        capabilities.put("documentFormattingProvider", Boolean.TRUE);
+        capabilities.put("documentRangeFormattingProvider", Boolean.TRUE);
+        capabilities.put("documentOnTypeFormattingProvider", onType);
+        final Map<String, Object> serverInfo = new LinkedHashMap<String, Object>();
+        serverInfo.put("name", "tabifier");
+        final Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put("capabilities", capabilities);
+        result.put("serverInfo", serverInfo);
+        return result;
+    }
+
+    /**
+     * @return LSP TextEdits which tabify the range of the document.
+     */
+    private List<Object> format(final String uri, final DocumentState document, final int start, final int end)
+            throws IOException
+    {
+        final List<Object>         result = new ArrayList<Object>();
+        final DocumentState.Window window = document.window(start, end);
+        if (window == null)
+        {
+            return result;
+        }
+        final List<TabifyEdit> edits = window.toDocument(formatter.format(uri,
+                window.getSource(),
+                window.getRangeStart(),
+                window.getRangeEnd()));
+        for (TabifyEdit edit : edits)
+        {
+            final Map<String, Object> range = new LinkedHashMap<String, Object>();
+            range.put("start", position(document, edit.getStartOffset()));
+            range.put("end", position(document, edit.getEndOffset()));
+            final Map<String, Object> textEdit = new LinkedHashMap<String, Object>();
+            textEdit.put("range", range);
+            textEdit.put("newText", document.isCrlf() ? edit.getText().replace("\n", "\r\n") : edit.getText());
+            result.add(textEdit);
+        }
+        return result;
+    }
+
+    private DocumentState document(final Map params) throws ProtocolException
+    {
+        final DocumentState document = documents.get(uri(params));
+        if (document == null)
+        {
+            throw new ProtocolException(INVALID_PARAMS, "document is not open: " + uri(params));
+        }
+        return document;
+    }
+
+    private static String uri(final Map params)
+    {
+        return (String) ((Map) params.get("textDocument")).get("uri");
+    }
+
+    private static int number(final Map object, final String name)
+    {
+        return ((Number) object.get(name)).intValue();
+    }
+
+    private static int offset(final DocumentState document, final Map position)
+    {
+        return document.offset(number(position, "line"), number(position, "character"));
+    }
+
+    private static Map<String, Object> position(final DocumentState document, final int offset)
+    {
+        final Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put("line", document.line(offset));
+        result.put("character", document.character(offset));
+        return result;
+    }
+
+    private static Map<String, Object> result(final Object id, final Object result)
+    {
+        final Map<String, Object> response = new LinkedHashMap<String, Object>();
+        response.put("jsonrpc", "2.0");
+        response.put("id", id);
+        response.put("result", result);
+        return response;
+    }
+
+    private static Map<String, Object> error(final Object id, final int code, final String message)
+    {
+        final Map<String, Object> error = new LinkedHashMap<String, Object>();
+        error.put("code", code);
+        error.put("message", message);
+        final Map<String, Object> response = new LinkedHashMap<String, Object>();
+        response.put("jsonrpc", "2.0");
+        response.put("id", id);
+        response.put("error", error);
+        return response;
+    }
+
+    /**
+     * @return content of the next message, or null at the end of the input.
+     */
+    private static String readMessage(final InputStream in) throws IOException
+    {
+        int length = -1;
+        while (true)
+        {
+            final String header = readHeaderLine(in);
+            if (header == null)
+            {
+                return null;
+            }
+            if (header.length() == 0)
+            {
+                if (length >= 0)
+                {
+                    break;
+                }
+                continue;                                       // stray blank line between messages
+            }
+            final int colon = header.indexOf(':');
+            if (colon > 0 && header.substring(0, colon).trim().equalsIgnoreCase("Content-Length"))
+            {
+                try
+                {
+                    length = Integer.parseInt(header.substring(colon + 1).trim());
+                }
+                catch (NumberFormatException e)
+                {
+                    throw new IOException("bad header: " + header);
+                }
+            }
+        }
+        final byte[] content = new byte[length];
+        for (int read = 0; read < length; )
+        {
+            final int n = in.read(content, read, length - read);
+            if (n < 0)
+            {
+                return null;
+            }
+            read += n;
+        }
+        return new String(content, "UTF-8");
+    }
+
+    private static String readHeaderLine(final InputStream in) throws IOException
+    {
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+              int                   c;
+        while ((c = in.read()) != '\n')
+        {
+            if (c < 0)
+            {
+                return null;
+            }
+            if (c != '\r')
+            {
+                line.write(c);
+            }
+        }
+        return line.toString("US-ASCII");
+    }
+
+    private void send(final Map<String, Object> message) throws IOException
+    {
+        final byte[] content = Json.write(message).getBytes("UTF-8");
+        out.write(("Content-Length: " + content.length + "\r\n\r\n").getBytes("US-ASCII"));
+        out.write(content);
+        out.flush();
+    }
+
+    private static final class ProtocolException extends Exception
+    {
+        private final int code;
+
+        ProtocolException(final int code, final String message)
+        {
+            super(message);
+            this.code = code;
+        }
+    }
+
+    public static void main(final String[] args) throws IOException
+    {
+        if (args.length != 1)
+        {
+            System.err.println("usage: TabifierLanguageServer <daemon port file>");
+            System.exit(1);
+        }
+        final TabifierClient client = TabifierClient.connect(new File(args[0]));
+        final int            code   = new TabifierLanguageServer(new Formatter()
+        {
+            public List<TabifyEdit> format(final String path, final String source, final int start, final int end)
+                    throws IOException
+            {
+                return client.format(path, source, start, end);
+            }
+        }).run(System.in, System.out);
+        client.close();
+        System.exit(code);
+    }
+}
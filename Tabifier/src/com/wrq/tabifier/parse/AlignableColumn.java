@@ -22,7 +22,9 @@
 package com.wrq.tabifier.parse;
 
 import com.wrq.tabifier.settings.ColumnSetting;
+import com.wrq.tabifier.settings.SettingsSnapshot;
 import com.wrq.tabifier.settings.TabifierSettings;
+import com.wrq.tabifier.util.Fingerprint;
 import org.apache.log4j.Logger;
 
 import javax.swing.*;
@@ -44,6 +46,17 @@ abstract public class AlignableColumn
     final int tab_size;
     boolean includeInDump;
     final protected TabifierSettings settings;
+    /** values of settings for this run; read in place of the Setting objects while aligning. */
+    final protected SettingsSnapshot snapshot;
+    /** topmost ancestor of this column; see getRoot(). */
+    private AlignableColumn root;
+    /** right edges of the token columns placed so far in this pass; only kept by a root column. */
+    private TrailingSpaceEdges trailingSpaceEdges;
+    /** index of this column in its sequence's list; set by ColumnSequence when the column is appended. */
+    int sequenceIndex;
+    /** position of this column in the column tree, and its hash; see getPath(). */
+    private String path;
+    private long pathHash;
     protected AlignableColumn(ColumnSetting setting,
             AlignableColumnNodeType nodeType,
             final int tab_spacing,
@@ -55,6 +68,7 @@ abstract public class AlignableColumn
         this.tab_size = tab_spacing;
         this.sequenceHead = sequenceHead;
         this.settings = settings;
+        this.snapshot = settings.snapshot();
     }
 
     final ColumnSetting getColumnSetting()
@@ -87,9 +101,73 @@ abstract public class AlignableColumn
         return sequenceHead;
     }
 
+    /**
+     * Columns are only ever appended to a sequence, so the path is fixed once the column exists and is built only
+     * once, from the already built path of the parent column.
+     *
+     * @return the position of this column in the column tree: node types and indices of this column and each of its
+     *         ancestors.  Tokens occupying columns with equal paths are aligned alike.
+     */
+    public final String getPath()
+    {
+        if (path == null)
+        {
+            final StringBuilder sb = new StringBuilder();
+            if (sequenceHead != null)
+            {
+                if (sequenceHead.getParent() != null)
+                {
+                    sb.append(sequenceHead.getParent().getPath()).append('/');
+                }
+                sb.append(sequenceHead.getName()).append(':').append(sequenceIndex).append(':');
+            }
+            path     = sb.append(getName()).toString();
+            pathHash = new Fingerprint().add(path).get();
+        }
+        return path;
+    }
+
+    /**
+     * @return 64-bit hash of getPath().
+     */
+    public final long getPathHash()
+    {
+        getPath();
+        return pathHash;
+    }
+
     protected abstract boolean isAllTokensHaveLeadingSpace(int indentBias);
 
-    protected abstract boolean isAllTokensHaveTrailingSpace(int tabstop, int indentBias);
+    /**
+     * @return the column at the top of the column tree containing this column; this column itself if it belongs to
+     *         the outermost sequence.
+     */
+    final AlignableColumn getRoot()
+    {
+        if (root == null)
+        {
+            AlignableColumn ac = this;
+            while (ac.getSequenceHead().getParent() != null)
+            {
+                ac = ac.getSequenceHead().getParent();
+            }
+            root = ac;
+        }
+        return root;
+    }
+
+    /**
+     * @return for a root column, the right edges of the token columns beneath it that have been placed since values
+     *         were last reset.
+     */
+    final TrailingSpaceEdges getTrailingSpaceEdges()
+    {
+        if (trailingSpaceEdges == null)
+        {
+            trailingSpaceEdges = new TrailingSpaceEdges();
+        }
+        return trailingSpaceEdges;
+    }
 
     String getName()
     {
@@ -137,6 +215,18 @@ abstract public class AlignableColumn
     }
 
     public void align(int indentBias)
+    {
+        align(indentBias, isAllTokensHaveLeadingSpace(indentBias));
+    }
+
+    /**
+     * Determine and set the tabstop of this column.
+     *
+     * @param indentBias                indent bias of the lines being aligned.
+     * @param allTokensHaveLeadingSpace result of isAllTokensHaveLeadingSpace(indentBias), which a subclass may
+     *                                  already have computed while gathering its tokens.
+     */
+    final void align(int indentBias, boolean allTokensHaveLeadingSpace)
     {
         int tabstop = determineTabstop(this);
         boolean logical_width_exists = false;
@@ -170,26 +260,17 @@ abstract public class AlignableColumn
              * the previous column
              * by -1 so that the effect is what the user expects.  This is done inside the apply() method.
              */
-            AlignableColumn root = this;
-            while (true)
-            {
-                AlignableColumn parent = root.getSequenceHead().getParent();
-                if (parent != null)
-                    root = parent;
-                else
-                    break;
-            }
-            if (setting.isAligned() &&
-                    (setting.getCharacters() > 0 || isAllTokensHaveLeadingSpace(indentBias)) &&
-                    root.isAllTokensHaveTrailingSpace(tabstop, indentBias))
+            if (snapshot.isAligned(setting) &&
+                    (snapshot.getCharacters(setting) > 0 || allTokensHaveLeadingSpace) &&
+                    getRoot().getTrailingSpaceEdges().isAllTokensHaveTrailingSpace(tabstop))
             {
                 tabstop--;
             }
-            tabstop = setting.apply(tabstop, tab_size, isAllTokensHaveLeadingSpace(indentBias));
+            tabstop = snapshot.apply(setting, tabstop, tab_size, allTokensHaveLeadingSpace);
         }
         else
         {
-            tabstop += (setting.getAdditionalIndentLevel() * tab_size);
+            tabstop += (snapshot.getAdditionalIndentLevel(setting) * tab_size);
         }
         setTabstop(tabstop);
     }
@@ -244,10 +325,19 @@ abstract public class AlignableColumn
 
     public abstract boolean determineNodesToDump(int indentBias);
 
+    /**
+     * @return number of nodes in the column tree below and including this column.
+     */
+    public abstract int countNodes();
+
     public void resetValues()
     {
         maxWidth = 0;
         tabstop = 0;
+        if (trailingSpaceEdges != null)
+        {
+            trailingSpaceEdges.clear();
+        }
     }
 
     public abstract JPanel display(boolean reduceClutter);
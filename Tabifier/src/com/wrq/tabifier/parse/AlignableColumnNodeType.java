@@ -21,12 +21,17 @@
  */
 package com.wrq.tabifier.parse;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * An AlignableColumnNodeType identifies an AlignableColumn in the column tree.  A SequenceNode may be searched to
  * find an AlignableColumn of the given type.  Types correspond to certain Java syntactic elements.
  */
 public class AlignableColumnNodeType
 {
+    /** must precede the types below, whose constructors number them from it. */
+    private static final AtomicInteger typeCount = new AtomicInteger();
+
     public static final AlignableColumnNodeType ASSIGNMENT_EXPRESSIONS     = new AlignableColumnNodeType("ASSIGNMENT_EXPRESSIONS"    );
     public static final AlignableColumnNodeType ASSIGNMENT_MODIFIERS       = new AlignableColumnNodeType("ASSIGNMENT_MODIFIERS"      );
     public static final AlignableColumnNodeType ASSIGNMENT_OPERATORS       = new AlignableColumnNodeType("ASSIGNMENT_OPERATORS"      );
@@ -81,10 +86,18 @@ public class AlignableColumnNodeType
     public static final AlignableColumnNodeType ANNOTATIONS                = new AlignableColumnNodeType("ANNOTATIONS"               );
 
     private final String name;
+    /** dense index of this type, used by ColumnSequence to find columns of a type without walking its list. */
+    private final int    ordinal;
 
     protected AlignableColumnNodeType(String name)
     {
-        this.name = name;
+        this.name    = name;
+        this.ordinal = typeCount.getAndIncrement();
+    }
+
+    public final int getOrdinal()
+    {
+        return ordinal;
     }
 
     public final String getName()
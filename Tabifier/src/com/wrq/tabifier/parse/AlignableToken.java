@@ -38,7 +38,22 @@ import java.util.ListIterator;
 public final class AlignableToken
 {
     private static final Logger logger = Logger.getLogger("com.wrq.tabifier.parse.AlignableToken");
-    private final String  value;
+
+    /** the element is white space (a PsiWhiteSpace element, or a substring of another element.) */
+    private static final int WHITE_SPACE     = 1 << 28;
+    private static final int RIGHT_JUSTIFIED = 1 << 29;
+    /** the token had a space appended because of code style settings. */
+    private static final int APPEND_SPACE    = 1 << 30;
+    /** low bits of slotAndFlags which hold the column slot. */
+    private static final int SLOT_MASK       = WHITE_SPACE - 1;
+
+    /** text of the element, or of the substring of it which this token represents. */
+    private final String  text;
+    /**
+     * text of the whole element, captured once at construction.  Shares identity with text when the token spans
+     * the whole element, so LineFormatter can detect a changed value by reference comparison.
+     */
+    private final String  originalText;
     private Line    line;
     /**
      * column to which this token will be aligned, or -1 if appended to previous token.
@@ -55,45 +70,41 @@ public final class AlignableToken
      * unaligned.)
      */
     private TokenColumn column;
-    /** true if the element is white space (a PsiWhiteSpace element, or a substring of another element. */
-    private boolean whiteSpace;
+    /**
+     * index of this token in its column's token list (see TokenColumn.removeToken()) in the low 28 bits, combined
+     * with WHITE_SPACE, RIGHT_JUSTIFIED and APPEND_SPACE.  Sharing the int keeps the token at 48 bytes.
+     */
+    private int slotAndFlags;
     /** element whose value token represents. */
     private final PsiElement element;
     /**
      * For PsiWhiteSpace elements, the token may represent only a substring of the element -- in particular,
      * newlines and space are treated separately.
      */
-    private int     elementOffset;
-    private int     elementLength;
-    private boolean isSubElement;  // true for PsiWhiteSpace elements -- see above
-    private boolean rightJustified;
-    private boolean appendSpace; // true if the token had a space appended because of code style settings
+    private final int     elementOffset;
 
     public AlignableToken(PsiElement element)
     {
-        this.element   = element;
-        column         = null;
-        line           = null;
-        rightJustified = false;
-        elementOffset  = 0;
-        isSubElement   = false;
-        value          = element.getText         ();
-        elementLength  = element.getText().length();
-        whiteSpace     = element instanceof PsiWhiteSpace;
-        appendSpace    = false;
+        this.element  = element;
+        text          = element.getText();
+        originalText  = text;
+        elementOffset = 0;
+        slotAndFlags  = element instanceof PsiWhiteSpace ? WHITE_SPACE : 0;
     }
 
     public AlignableToken(PsiElement element, int offset, int length)
     {
-        this(element);
+        final String elementText = element.getText();
+        this.element  = element;
+        text          = elementText.substring(offset, offset + length);
+        originalText  = elementText;
         elementOffset = offset;
-        elementLength = length;
-        isSubElement  = true;
-        whiteSpace    = (element.getText().length() > 0);
-        for (int i = offset; (i < offset+length) && whiteSpace; i++) {
-            final char c = element.getText().charAt(i);
+        boolean whiteSpace = elementText.length() > 0;
+        for (int i = 0; i < length && whiteSpace; i++) {
+            final char c = text.charAt(i);
             whiteSpace &= (c == ' ' || c == '\n' || c == '\t');
         }
+        slotAndFlags = whiteSpace ? WHITE_SPACE : 0;
     }
 
     /**
@@ -117,19 +128,20 @@ public final class AlignableToken
             s = s + " ";
         }
         alternateRepresentation = s;
-        this.appendSpace = appendSpace;
+        setAppendSpace(appendSpace);
     }
 
     public final String getValue()
     {
-        return alternateRepresentation == null ?
-                (isSubElement ? value.substring(elementOffset, elementOffset + elementLength) : value)
-                : alternateRepresentation;
+        return alternateRepresentation == null ? text : alternateRepresentation;
     }
 
+    /**
+     * @return text of the whole element, even if this token represents only a substring of it.
+     */
     public final String getOriginalValue()
     {
-        return value;
+        return originalText;
     }
 
     public final Line getLine()
@@ -150,14 +162,15 @@ public final class AlignableToken
     public final void setLinePosition(int linePosition)
     {
         this.linePosition = linePosition;
-        logger.debug("setLinePosition: " + linePosition + " for token '" + getValue() + "'");
+        if (logger.isDebugEnabled())
+            logger.debug("setLinePosition: " + linePosition + " for token '" + getValue() + "'");
     }
 
     public final void setAlternateRepresentation(String alternateRepresentation)
     {
         this.alternateRepresentation = alternateRepresentation;
-        if (whiteSpace && alternateRepresentation.replaceAll("[ \n\t]", "").length() > 0) {
-            whiteSpace = false;
+        if ((slotAndFlags & WHITE_SPACE) != 0 && alternateRepresentation.replaceAll("[ \n\t]", "").length() > 0) {
+            slotAndFlags &= ~WHITE_SPACE;
         }
     }
 
@@ -171,9 +184,19 @@ public final class AlignableToken
         this.column = tbc;
     }
 
+    final int getColumnSlot()
+    {
+        return slotAndFlags & SLOT_MASK;
+    }
+
+    final void setColumnSlot(int columnSlot)
+    {
+        slotAndFlags = (slotAndFlags & ~SLOT_MASK) | (columnSlot & SLOT_MASK);
+    }
+
     public final int getWidthIgnoringTrailingPadding()
     {
-        return getWidth() - (appendSpace ? 1 : 0);
+        return getWidth() - ((slotAndFlags & APPEND_SPACE) != 0 ? 1 : 0);
     }
 
     public final int getWidth()
@@ -183,12 +206,12 @@ public final class AlignableToken
 
     public final boolean isWhiteSpace()
     {
-        return whiteSpace;
+        return (slotAndFlags & WHITE_SPACE) != 0;
     }
 
     public final boolean isRightJustified()
     {
-        return rightJustified;
+        return (slotAndFlags & RIGHT_JUSTIFIED) != 0;
     }
 
     public final PsiElement getElement()
@@ -208,22 +231,25 @@ public final class AlignableToken
 
     public final int getElementLength()
     {
-        return elementLength;
+        return text.length();
     }
 
     public final void setRightJustified()
     {
-        this.rightJustified = true;
+        slotAndFlags |= RIGHT_JUSTIFIED;
     }
 
     public boolean isAppendSpace()
     {
-        return appendSpace;
+        return (slotAndFlags & APPEND_SPACE) != 0;
     }
 
     public void setAppendSpace(boolean appendSpace)
     {
-        this.appendSpace = appendSpace;
+        if (appendSpace)
+            slotAndFlags |= APPEND_SPACE;
+        else
+            slotAndFlags &= ~APPEND_SPACE;
     }
 
     /**
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.tabifier.parse;
+
+import com.wrq.tabifier.settings.TabifierSettings;
+
+/**
+ * A ColumnSequence for a class body:  the class column, whose FIELD sequence holds the class members, followed
+ * by trailing comments.
+ */
+public class ClassColumnSequence
+        extends ColumnSequence
+{
+    private final ColumnChoice   classChoice;
+    private final ColumnSequence fieldSequence;
+    private final TokenColumn    trailingComments;
+
+    public ClassColumnSequence(AlignableColumn parent, int tabSize, TabifierSettings settings)
+    {
+        super(ColumnSequenceNodeType.CLASS_SEQ, parent, tabSize, settings);
+        classChoice      = appendChoiceColumn(settings.align_class, AlignableColumnNodeType.CLASS                        );
+        fieldSequence    = classChoice.findOrAppend(ColumnSequenceNodeType.FIELD);
+        trailingComments = appendTokenColumn (settings.align_trailing_comments, AlignableColumnNodeType.TRAILING_COMMENTS);
+    }
+
+    public final ColumnChoice getClassChoice()
+    {
+        return classChoice;
+    }
+
+    public final ColumnSequence getFieldSequence()
+    {
+        return fieldSequence;
+    }
+
+    public final TokenColumn getTrailingComments()
+    {
+        return trailingComments;
+    }
+}
@@ -28,9 +28,9 @@ import com.wrq.tabifier.util.SizedPanel;
 import org.apache.log4j.Logger;
 
 import javax.swing.*;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 import java.awt.*;
 
 /**
@@ -44,8 +44,10 @@ import java.awt.*;
 public final class ColumnChoice
         extends AlignableColumn
 {
-    private static final Logger               logger  = Logger.getLogger("com.wrq.tabifier.parse.ColumnChoice");
-    private        final List<ColumnSequence> choices;
+    private static final Logger                    logger        = Logger.getLogger("com.wrq.tabifier.parse.ColumnChoice");
+    private        final List<ColumnSequence>      choices;
+    /** the sequences of choices, indexed by the ordinal of their node type. */
+    private        final ArrayList<ColumnSequence> choicesByType = new ArrayList<>();
 
     public ColumnChoice(ColumnSetting           setting,
                         AlignableColumnNodeType nodeType,
@@ -65,47 +67,10 @@ public final class ColumnChoice
         return false;
     }
 
-    public boolean isAllTokensHaveTrailingSpace(int tabStop, int indentBias)
-    {
-        boolean                      result = true;
-        ListIterator<ColumnSequence> li     = choices.listIterator();
-        while (result && li.hasNext())
-        {
-            ColumnSequence                sequence =  li.next();
-            ListIterator<AlignableColumn> cols     = sequence.getSequenceList().listIterator();
-            while (result && cols.hasNext())
-            {
-                AlignableColumn column = cols.next();
-                if (column instanceof TokenColumn) {
-                    if (column.getTabstop() + column.getMaxWidth() == tabStop) {
-                    /**
-                     * this column ends where the parent ends, so check its tokens for trailing space.
-                     */
-                        result = column.isAllTokensHaveTrailingSpace(tabStop, indentBias);
-                    }
-                }
-                else {
-                    if (column.getTabstop() <= tabStop && column.getTabstop() + column.getMaxWidth() >= tabStop) {
-                        /**
-                         * this column encompasses the tab stop in question.  Dig deeper.
-                         */
-                        result = column.isAllTokensHaveTrailingSpace(tabStop, indentBias);
-
-                    }
-                }
-            }
-        }
-        return result;
-    }
-
     private ColumnSequence find(ColumnSequenceNodeType nodeType)
     {
-        for (ColumnSequence columnSequence : choices)
-        {
-            if (columnSequence.getNodeType() == nodeType)
-                return columnSequence;
-        }
-        return null;
+        final int ordinal = nodeType.getOrdinal();
+        return ordinal < choicesByType.size() ? choicesByType.get(ordinal) : null;
     }
 
     public final ColumnSequence findOrAppend(ColumnSequenceNodeType nodeType)
@@ -123,6 +88,12 @@ public final class ColumnChoice
         ColumnSequence result = ColumnSequenceFactory.createColumnSequence(nodeType, this, tab_size,
                 settings); 
         choices.add(result);
+        final int ordinal = nodeType.getOrdinal();
+        while (choicesByType.size() <= ordinal)
+        {
+            choicesByType.add(null);
+        }
+        choicesByType.set(ordinal, result);
         return result;
     }
 
@@ -190,6 +161,16 @@ public final class ColumnChoice
         return includeInDump;
     }
 
+    public final int countNodes()
+    {
+        int result = 1;
+        for (ColumnSequence sequence : choices)
+        {
+            result += sequence.countNodes();
+        }
+        return result;
+    }
+
     public final void dumpDetails(String prefix, int indentBias)
     {
         if (!includeInDump) return;
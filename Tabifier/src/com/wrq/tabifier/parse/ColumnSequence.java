@@ -29,6 +29,7 @@ import com.wrq.tabifier.util.SizedPanel;
 import org.apache.log4j.Logger;
 
 import javax.swing.*;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
@@ -55,6 +56,8 @@ public class ColumnSequence
 {
     private static final Logger logger = Logger.getLogger("com.wrq.tabifier.parse.ColumnSequence");
     private final List<AlignableColumn> sequenceList;
+    /** columns of sequenceList, in order, indexed by the ordinal of their node type; see findNth(). */
+    private final ArrayList<List<AlignableColumn>> columnsByType = new ArrayList<>();
     private final ColumnSequenceNodeType nodeType;
     private int tabstop;
     private int totalWidth;
@@ -114,7 +117,7 @@ public class ColumnSequence
                                                  AlignableColumnNodeType nodeType)
     {
         ColumnChoice result = new ColumnChoice(setting, nodeType, tab_size, this, settings);
-        sequenceList.add(result);
+        append(result);
         return result;
     }
 
@@ -145,25 +148,40 @@ public class ColumnSequence
      */
     public AlignableColumn findNth(AlignableColumnNodeType nodeType, int n)
     {
-        int nOccurrences = 0;
-        for (AlignableColumn icc : sequenceList)
+        final int ordinal = nodeType.getOrdinal();
+        if (ordinal >= columnsByType.size() || n < 1)
         {
-            if (icc.getNodeType() == nodeType)
-            {
-                nOccurrences++;
-                if (nOccurrences == n)
-                {
-                    return icc;
-                }
-            }
+            return null;
+        }
+        final List<AlignableColumn> columns = columnsByType.get(ordinal);
+        return columns == null || n > columns.size() ? null : columns.get(n - 1);
+    }
+
+    /**
+     * Appends a column to the sequence list, and to the list of columns of its node type.
+     */
+    private void append(AlignableColumn column)
+    {
+        column.sequenceIndex = sequenceList.size();
+        sequenceList.add(column);
+        final int ordinal = column.getNodeType().getOrdinal();
+        while (columnsByType.size() <= ordinal)
+        {
+            columnsByType.add(null);
+        }
+        List<AlignableColumn> columns = columnsByType.get(ordinal);
+        if (columns == null)
+        {
+            columns = new ArrayList<>(2);
+            columnsByType.set(ordinal, columns);
         }
-        return null;
+        columns.add(column);
     }
 
     public final TokenColumn appendTokenColumn(ColumnSetting setting, AlignableColumnNodeType nodeType)
     {
         TokenColumn result = new TokenColumn(setting, nodeType, tab_size, this, settings);
-        sequenceList.add(result);
+        append(result);
         return result;
     }
 
@@ -174,7 +192,7 @@ public class ColumnSequence
                 tab_size,
                 this,
                 settings);
-        sequenceList.add(result);
+        append(result);
         return result;
     }
 
@@ -293,6 +311,19 @@ public class ColumnSequence
         return includeInDump;
     }
 
+    /**
+     * @return number of nodes in the column tree below and including this sequence.
+     */
+    public final int countNodes()
+    {
+        int result = 1;
+        for (AlignableColumn column : getSequenceList())
+        {
+            result += column.countNodes();
+        }
+        return result;
+    }
+
     public void resetValues()
     {
         tabstop = 0;
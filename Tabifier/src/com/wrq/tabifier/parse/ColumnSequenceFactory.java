@@ -24,7 +24,10 @@ package com.wrq.tabifier.parse;
 import com.wrq.tabifier.settings.TabifierSettings;
 
 /**
- * Creates ColumnSequence objects and guarantees proper initialization of their sequences.
+ * Creates ColumnSequence objects and guarantees proper initialization of their sequences.  Node types whose
+ * sequences always hold the same columns are created as a subclass that appends those columns once, when the
+ * sequence is first added to its ColumnChoice, and keeps them in fields; parsers take the columns from there
+ * rather than searching for them and appending any that are missing.
  */
 public class ColumnSequenceFactory
 {
@@ -39,6 +42,21 @@ public class ColumnSequenceFactory
         if (nodeType == ColumnSequenceNodeType.DECLARATION) {
             result = new DeclarationColumnSequence(parent, tab_size, settings);
         }
+        else if (nodeType == ColumnSequenceNodeType.METHOD_DECLARATION_PARAMETERS) {
+            result = new MethodDeclarationColumnSequence(parent, tab_size, settings);
+        }
+        else if (nodeType == ColumnSequenceNodeType.BRACES) {
+            result = new BracesColumnSequence(parent, tab_size, settings);
+        }
+        else if (nodeType == ColumnSequenceNodeType.CLASS_SEQ) {
+            result = new ClassColumnSequence(parent, tab_size, settings);
+        }
+        else if (nodeType == ColumnSequenceNodeType.HORIZONTAL_CODE_BLOCK) {
+            result = new HorizontalCodeBlockColumnSequence(parent, tab_size, settings);
+        }
+        else if (nodeType == ColumnSequenceNodeType.NEW_EXPRESSION) {
+            result = new NewExpressionColumnSequence(parent, tab_size, settings);
+        }
         else
         {
             result = new ColumnSequence(nodeType, parent, tab_size, settings);
@@ -21,8 +21,7 @@
  */
 package com.wrq.tabifier.parse;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Type of ColumnSequence node in the column tree.  The types correspond to various strategic syntactic points
@@ -30,6 +29,12 @@ import java.util.Map;
  */
 public class ColumnSequenceNodeType
 {
+    /**
+     * number of types created so far; types created during a run are numbered from here by MethodCallNodeTypes.
+     * Must precede the types below, whose constructors number them from it.
+     */
+    private static final AtomicInteger staticTypeCount = new AtomicInteger();
+
     public  static final ColumnSequenceNodeType ANNOTATION_GROUP              = new ColumnSequenceNodeType("ANNOTATION_GROUP"             );
     public  static final ColumnSequenceNodeType ANNOTATION                    = new ColumnSequenceNodeType("ANNOTATION"                   );
     public  static final ColumnSequenceNodeType ARITHMETIC_EXPRESSION         = new ColumnSequenceNodeType("ARITHMETIC_EXPRESSION"        );
@@ -45,9 +50,10 @@ public class ColumnSequenceNodeType
     public  static final ColumnSequenceNodeType IF_STATEMENT_ITSELF           = new ColumnSequenceNodeType("IF_STATEMENT_ITSELF"          );
     public  static final ColumnSequenceNodeType BRACES                        = new ColumnSequenceNodeType("BRACES"                       );
     public  static final ColumnSequenceNodeType LOGICAL_EXPRESSION            = new ColumnSequenceNodeType("LOGICAL_EXPRESSION"           );
-    private static final ColumnSequenceNodeType METHOD_CALLS                  = new ColumnSequenceNodeType("METHOD_CALLS"                 );
+            static final ColumnSequenceNodeType METHOD_CALLS                  = new ColumnSequenceNodeType("METHOD_CALLS"                 );
     public  static final ColumnSequenceNodeType METHOD_DECLARATION_PARAMETERS = new ColumnSequenceNodeType("METHOD_DECLARATION_PARAMETERS");
     public  static final ColumnSequenceNodeType NEW_EXPRESSION                = new ColumnSequenceNodeType("NEW_EXPRESSION"               );
+    public  static final ColumnSequenceNodeType NEW_OBJECT                    = new ColumnSequenceNodeType("NEW_OBJECT"                   );
     public  static final ColumnSequenceNodeType PARAMLIST                     = new ColumnSequenceNodeType("PARAMLIST"                    );
     public  static final ColumnSequenceNodeType PARENTHESIZED_EXPRESSION      = new ColumnSequenceNodeType("PARENTHESIZED_EXPRESSION"     );
     public  static final ColumnSequenceNodeType RELATIONAL_EXPRESSION         = new ColumnSequenceNodeType("RELATIONAL_EXPRESSION"        );
@@ -63,68 +69,38 @@ public class ColumnSequenceNodeType
     public  static final ColumnSequenceNodeType HORIZONTAL_CODE_BLOCK         = new ColumnSequenceNodeType("HORIZONTAL_CODE_BLOCK"        );
     public  static final ColumnSequenceNodeType FIELD_COMMA_PAIR              = new ColumnSequenceNodeType("FIELD_COMMA_PAIR"             );
 
-    private static final Map<String, ColumnSequenceNodeType> methodCallCSNTs =
-            new HashMap<String, ColumnSequenceNodeType>();
-
     final String name;
+    /** dense index of this type, used by ColumnChoice to find its sequence of a type without walking its list. */
+    private final int ordinal;
 
     protected ColumnSequenceNodeType(String name)
     {
-        this.name = name;
+        this.name    = name;
+        this.ordinal = staticTypeCount.getAndIncrement();
     }
 
     /**
-     * Method calls are aligned in groups based on similarity of method call name, controlled by a threshold value
-     * indicating the number of identical leading characters necessary to group methods together.  This method
-     * returns a ColumnSequenceNodeType which is unique for the given method name and threshold.  If the threshold
-     * is zero, it returns ColumnSequenceNodeType METHOD_CALLS (and all method calls will be aligned as a group.)
-     *
-     * If a method call involves nested method calls, e.g. this.getSomething().iterator(), then make the similarity
-     * test apply to all leading characters following the dots.  In the example, if the threshold is four, then
-     * methods matching "this.getS*.iter*" would be aligned together.
+     * Creates a type whose ordinal is assigned by a per-run registry.
      */
-    public static ColumnSequenceNodeType getMethodCallCSNT(String methodName, int threshold)
+    ColumnSequenceNodeType(String name, int ordinal)
     {
-        if (threshold == 0)
-        {
-            return METHOD_CALLS;
-        }
-        StringBuffer searchKey = new StringBuffer();
-        while (methodName.length() > 0)
-        {
-            int    dot     = methodName.indexOf(".");
-            String subname = (dot < 0 ? methodName : methodName.substring(0, dot));
-            if (threshold < subname.length())
-            {
-                subname = subname.substring(0, threshold);
-            }
-            searchKey.append(subname);
-            if (dot >= 0) {
-                searchKey.append(".");
-                methodName = methodName.substring(dot + 1, methodName.length());
-            }
-            else break;
-        }
-
-        ColumnSequenceNodeType result = methodCallCSNTs.get(searchKey.toString());
-        if (result == null)
-        {
-            result = new ColumnSequenceNodeType(searchKey.toString());
-            methodCallCSNTs.put(searchKey.toString(), result);
-        }
-        return result;
+        this.name    = name;
+        this.ordinal = ordinal;
     }
 
     /**
-     * Some CSNT's are shared at different points in the syntax tree but have the same sequences.  Therefore
-     * the CSNT's list of choice and token columns should be initialized in a common place - here.  Over time,
-     * every CSNT instance should be of a subclass of CSNT, and this class should be abstract.  For now, leave
-     * initialization to the unique place the CSNT is used.
+     * @return number of statically defined types.
      */
-    protected void initializeCSNT()
+    public static int getStaticTypeCount()
     {
-        // initialize elsewhere.
+        return staticTypeCount.get();
     }
+
+    public final int getOrdinal()
+    {
+        return ordinal;
+    }
+
     public final String toString()
     {
         return name;
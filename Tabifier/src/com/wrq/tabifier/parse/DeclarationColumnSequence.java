@@ -29,17 +29,66 @@ import com.wrq.tabifier.settings.TabifierSettings;
 public class DeclarationColumnSequence
         extends ColumnSequence
 {
+    private final ColumnChoice        annotations;
+    private final ModifierTokenColumn modifiers;
+    private final TokenColumn         types;
+    private final TokenColumn         names;
+    private final TokenColumn         assignmentOperators;
+    private final ColumnChoice        terms;
+    private final TokenColumn         commas;
+    private final TokenColumn         semicolons;
+
     public DeclarationColumnSequence(AlignableColumn parent, int tabSize, TabifierSettings settings)
     {
         super(ColumnSequenceNodeType.DECLARATION, parent, tabSize, settings);
-        appendChoiceColumn       (settings.align_annotations, AlignableColumnNodeType.ANNOTATIONS                  );
-        appendModifierTokenColumn(settings.align_modifiers                                                         );
-        appendTokenColumn        (settings.align_variable_types, AlignableColumnNodeType.VARTYPES                  );
-        appendTokenColumn        (settings.align_variable_names, AlignableColumnNodeType.VARNAMES                  );
+        annotations         = appendChoiceColumn(settings.align_annotations, AlignableColumnNodeType.ANNOTATIONS                  );
+        modifiers           = (ModifierTokenColumn) appendModifierTokenColumn(settings.align_modifiers                            );
+        types               = appendTokenColumn (settings.align_variable_types, AlignableColumnNodeType.VARTYPES                  );
+        names               = appendTokenColumn (settings.align_variable_names, AlignableColumnNodeType.VARNAMES                  );
 //        appendChoiceColumn       (settings.align_method_decl_open_parend, AlignableColumnNodeType.PARAMS           );   todo
-        appendTokenColumn        (settings.align_assignment_operators, AlignableColumnNodeType.ASSIGNMENT_OPERATORS);
-        appendChoiceColumn       (settings.align_terms, AlignableColumnNodeType.TERMS                              );
-        appendTokenColumn        (settings.align_commas, AlignableColumnNodeType.COMMAS                            );
-        appendTokenColumn        (settings.align_semicolons, AlignableColumnNodeType.STATEMENT_SEMICOLONS          );
+        assignmentOperators = appendTokenColumn (settings.align_assignment_operators, AlignableColumnNodeType.ASSIGNMENT_OPERATORS);
+        terms               = appendChoiceColumn(settings.align_terms, AlignableColumnNodeType.TERMS                              );
+        commas              = appendTokenColumn (settings.align_commas, AlignableColumnNodeType.COMMAS                            );
+        semicolons          = appendTokenColumn (settings.align_semicolons, AlignableColumnNodeType.STATEMENT_SEMICOLONS          );
+    }
+
+    public final ColumnChoice getAnnotations()
+    {
+        return annotations;
+    }
+
+    public final ModifierTokenColumn getModifiers()
+    {
+        return modifiers;
+    }
+
+    public final TokenColumn getTypes()
+    {
+        return types;
+    }
+
+    public final TokenColumn getNames()
+    {
+        return names;
+    }
+
+    public final TokenColumn getAssignmentOperators()
+    {
+        return assignmentOperators;
+    }
+
+    public final ColumnChoice getTerms()
+    {
+        return terms;
+    }
+
+    public final TokenColumn getCommas()
+    {
+        return commas;
+    }
+
+    public final TokenColumn getSemicolons()
+    {
+        return semicolons;
     }
 }
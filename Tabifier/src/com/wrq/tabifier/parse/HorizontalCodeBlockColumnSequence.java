@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.tabifier.parse;
+
+import com.wrq.tabifier.settings.TabifierSettings;
+
+/**
+ * A ColumnSequence for a code block whose braces are on the same line:  left brace, statements, right brace.
+ */
+public class HorizontalCodeBlockColumnSequence
+        extends ColumnSequence
+{
+    private final TokenColumn    leftBrace;
+    private final ColumnChoice   statements;
+    private final TokenColumn    rightBrace;
+    private final ColumnSequence statementSequence;
+
+    public HorizontalCodeBlockColumnSequence(AlignableColumn parent, int tabSize, TabifierSettings settings)
+    {
+        super(ColumnSequenceNodeType.HORIZONTAL_CODE_BLOCK, parent, tabSize, settings);
+        leftBrace         = appendTokenColumn (settings.align_braces, AlignableColumnNodeType.LEFT_BRACE   );
+        statements        = appendChoiceColumn(settings.align_statements, AlignableColumnNodeType.STATEMENT);
+        rightBrace        = appendTokenColumn (settings.align_braces, AlignableColumnNodeType.RIGHT_BRACE  );
+        statementSequence = statements.findOrAppend(ColumnSequenceNodeType.CODE_BLOCK);
+    }
+
+    public final TokenColumn getLeftBrace()
+    {
+        return leftBrace;
+    }
+
+    public final ColumnChoice getStatements()
+    {
+        return statements;
+    }
+
+    public final TokenColumn getRightBrace()
+    {
+        return rightBrace;
+    }
+
+    public final ColumnSequence getStatementSequence()
+    {
+        return statementSequence;
+    }
+}
@@ -64,7 +64,6 @@ public final class LineGroup
     private final DocumentParser parser;
     private final TabifierSettings settings;
     private final ArrayList<Line> groupedLines;
-    public static final ArrayList<Line> reformatableLines = new ArrayList<>();
     private LineType lastStatement;
     private boolean includeCurrentLineInAlignmentGroup;
 
@@ -77,11 +76,6 @@ public final class LineGroup
         includeCurrentLineInAlignmentGroup = true;
     }
 
-    public static void reset()
-    {
-        reformatableLines.clear();
-    }
-
     public void setStatementType(LineType type)
     {
         boolean debug = tabifier.seeingTokensInRange;
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.tabifier.parse;
+
+import java.util.Arrays;
+
+/**
+ * Creates the ColumnSequenceNodeTypes for groups of similar method calls during one run of the tabifier.  Each type is
+ * numbered following the statically defined types, so that the column tree can index its sequences by ordinal.
+ * <p/>
+ * Method calls are aligned in groups based on similarity of method call name, controlled by a threshold value
+ * indicating the number of identical leading characters necessary to group methods together.  If a method call
+ * involves nested method calls, e.g. this.getSomething().iterator(), then the similarity test applies to all leading
+ * characters following the dots.  In the example, if the threshold is four, then methods matching "this.getS*.iter*"
+ * would be aligned together.
+ * <p/>
+ * Groups are found by walking a prefix trie one character at a time, so no key strings are built except when a new
+ * group is seen.  The trie holds no more than threshold characters per dotted segment of each distinct call, and is
+ * discarded with the registry at the end of the run.
+ */
+public final class MethodCallNodeTypes
+{
+    private final int  threshold;
+    private final Node root        = new Node();
+    private       int  nextOrdinal = ColumnSequenceNodeType.getStaticTypeCount();
+
+    /**
+     * @param threshold number of leading characters of each segment of a method call name which must match for calls
+     *                  to be aligned together; if zero, all method calls are aligned as one group.
+     */
+    public MethodCallNodeTypes(int threshold)
+    {
+        this.threshold = threshold;
+    }
+
+    /**
+     * @param methodName text of the method call's method expression, e.g. "this.getSomething().iterator".
+     * @return a ColumnSequenceNodeType which is unique for the group of calls similar to methodName.  If the
+     *         threshold is zero, ColumnSequenceNodeType METHOD_CALLS.
+     */
+    public ColumnSequenceNodeType get(String methodName)
+    {
+        if (threshold == 0)
+        {
+            return ColumnSequenceNodeType.METHOD_CALLS;
+        }
+        Node node          = root;
+        int  segmentLength = 0;
+        for (int i = 0; i < methodName.length(); i++)
+        {
+            final char c = methodName.charAt(i);
+            if (c == '.')
+            {
+                node          = node.child(c);
+                segmentLength = 0;
+            }
+            else if (segmentLength < threshold)
+            {
+                node = node.child(c);
+                segmentLength++;
+            }
+        }
+        if (node.type == null)
+        {
+            node.type = new ColumnSequenceNodeType(key(methodName), nextOrdinal++);
+        }
+        return node.type;
+    }
+
+    /**
+     * @return number of method call groups seen so far in this run.
+     */
+    public int size()
+    {
+        return nextOrdinal - ColumnSequenceNodeType.getStaticTypeCount();
+    }
+
+    /**
+     * @return the name of the group of methodName: each dotted segment truncated to threshold characters.
+     */
+    private String key(String methodName)
+    {
+        final StringBuilder key           = new StringBuilder(methodName.length());
+        int                 segmentLength = 0;
+        for (int i = 0; i < methodName.length(); i++)
+        {
+            final char c = methodName.charAt(i);
+            if (c == '.')
+            {
+                key.append(c);
+                segmentLength = 0;
+            }
+            else if (segmentLength < threshold)
+            {
+                key.append(c);
+                segmentLength++;
+            }
+        }
+        return key.toString();
+    }
+
+    private static final class Node
+    {
+        private static final char[] NO_KEYS  = new char[0];
+        private static final Node[] NO_NODES = new Node[0];
+
+        private char[]                 keys     = NO_KEYS;
+        private Node[]                 children = NO_NODES;
+        private int                    size;
+        private ColumnSequenceNodeType type;
+
+        /**
+         * @return the child for character c, which is added if not present.
+         */
+        Node child(char c)
+        {
+            for (int i = 0; i < size; i++)
+            {
+                if (keys[i] == c)
+                {
+                    return children[i];
+                }
+            }
+            if (size == keys.length)
+            {
+                final int capacity = size == 0 ? 2 : size * 2;
+                keys     = Arrays.copyOf(keys, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            final Node result = new Node();
+            keys    [size] = c;
+            children[size] = result;
+            size++;
+            return result;
+        }
+    }
+}
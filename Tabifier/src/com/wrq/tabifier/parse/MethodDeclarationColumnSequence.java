@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.tabifier.parse;
+
+import com.wrq.tabifier.settings.TabifierSettings;
+
+/**
+ * A ColumnSequence for method declarations:  annotations, modifiers, return type, name, parameter list and
+ * semicolon.  A one-line method body is placed in a code block column appended after these on first use.
+ */
+public class MethodDeclarationColumnSequence
+        extends ColumnSequence
+{
+    private final ColumnChoice        annotations;
+    private final ModifierTokenColumn modifiers;
+    private final TokenColumn         types;
+    private final TokenColumn         names;
+    private final ColumnChoice        params;
+    private final ColumnSequence      parameterDecls;
+    private final TokenColumn         semicolons;
+    private final TabifierSettings    settings;
+    private       ColumnChoice        codeBlock;
+
+    public MethodDeclarationColumnSequence(AlignableColumn parent, int tabSize, TabifierSettings settings)
+    {
+        super(ColumnSequenceNodeType.METHOD_DECLARATION_PARAMETERS, parent, tabSize, settings);
+        this.settings  = settings;
+        annotations    = appendChoiceColumn(settings.align_annotations, AlignableColumnNodeType.ANNOTATIONS        );
+        modifiers      = (ModifierTokenColumn) appendModifierTokenColumn(settings.align_modifiers                  );
+        types          = appendTokenColumn (settings.align_variable_types, AlignableColumnNodeType.VARTYPES        );
+        names          = appendTokenColumn (settings.align_variable_names, AlignableColumnNodeType.VARNAMES        );
+        params         = appendChoiceColumn(settings.align_method_decl_open_parend, AlignableColumnNodeType.PARAMS );
+        semicolons     = appendTokenColumn (settings.align_semicolons, AlignableColumnNodeType.STATEMENT_SEMICOLONS);
+        parameterDecls = params.findOrAppend(ColumnSequenceNodeType.PARAMLIST);
+    }
+
+    public final ColumnChoice getAnnotations()
+    {
+        return annotations;
+    }
+
+    public final ModifierTokenColumn getModifiers()
+    {
+        return modifiers;
+    }
+
+    public final TokenColumn getTypes()
+    {
+        return types;
+    }
+
+    public final TokenColumn getNames()
+    {
+        return names;
+    }
+
+    public final ColumnSequence getParameterDecls()
+    {
+        return parameterDecls;
+    }
+
+    public final TokenColumn getSemicolons()
+    {
+        return semicolons;
+    }
+
+    /**
+     * @return the column holding one-line method bodies, appended after the semicolon column the first time
+     *         such a body is seen.
+     */
+    public final ColumnChoice getCodeBlock()
+    {
+        if (codeBlock == null)
+        {
+            codeBlock = appendChoiceColumn(settings.align_code_block, AlignableColumnNodeType.CODE_BLOCK);
+        }
+        return codeBlock;
+    }
+}
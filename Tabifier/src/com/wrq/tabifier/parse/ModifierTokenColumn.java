@@ -56,7 +56,7 @@ public final class ModifierTokenColumn extends TokenColumn
         RearrangeableColumnSetting cs = (RearrangeableColumnSetting) getColumnSetting();
         logger.debug("calc alternate representations for modifiers; subaligned=" + cs.isRearrange() +
                      ", column="                                                 + getColumnSetting().toString());
-        if (cs.isAligned() && cs.isRearrange())
+        if (snapshot.isAligned(cs) && snapshot.isRearrange(cs))
         {
             ListIterator/*<AlignableToken>*/ iterator = getTokenList(indentBias).listIterator();
             while (iterator.hasNext())
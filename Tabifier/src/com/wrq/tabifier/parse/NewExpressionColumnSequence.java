@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.tabifier.parse;
+
+import com.wrq.tabifier.settings.TabifierSettings;
+
+/**
+ * A ColumnSequence for object and array creation:  the 'new' keyword followed by the reference element, whose
+ * NEW_OBJECT sequence holds the array type, braces and array initializer.
+ */
+public class NewExpressionColumnSequence
+        extends ColumnSequence
+{
+    private final TokenColumn  newToken;
+    private final ColumnChoice referenceElement;
+    private final TokenColumn  arrayType;
+    private final TokenColumn  leftBrace;
+    private final TokenColumn  rightBrace;
+    private final ColumnChoice arrayInitializer;
+
+    public NewExpressionColumnSequence(AlignableColumn parent, int tabSize, TabifierSettings settings)
+    {
+        super(ColumnSequenceNodeType.NEW_EXPRESSION, parent, tabSize, settings);
+        newToken         = appendTokenColumn (settings.align_terms, AlignableColumnNodeType.NEW_TOKEN               );
+        referenceElement = appendChoiceColumn(settings.align_new_object, AlignableColumnNodeType.REFERENCE_ELEMENT);
+        final ColumnSequence objectSequence = referenceElement.findOrAppend(ColumnSequenceNodeType.NEW_OBJECT);
+        arrayType        = objectSequence.appendTokenColumn (settings.align_new_object, AlignableColumnNodeType.ARRAY_TYPE );
+        leftBrace        = objectSequence.appendTokenColumn (settings.align_braces, AlignableColumnNodeType.LEFT_BRACE       );
+        rightBrace       = objectSequence.appendTokenColumn (settings.align_braces, AlignableColumnNodeType.RIGHT_BRACE      );
+        arrayInitializer = objectSequence.appendChoiceColumn(settings.align_braces, AlignableColumnNodeType.ARRAY_INITIALIZER);
+    }
+
+    public final TokenColumn getNewToken()
+    {
+        return newToken;
+    }
+
+    public final ColumnChoice getReferenceElement()
+    {
+        return referenceElement;
+    }
+
+    public final TokenColumn getArrayType()
+    {
+        return arrayType;
+    }
+
+    public final TokenColumn getLeftBrace()
+    {
+        return leftBrace;
+    }
+
+    public final TokenColumn getRightBrace()
+    {
+        return rightBrace;
+    }
+
+    public final ColumnChoice getArrayInitializer()
+    {
+        return arrayInitializer;
+    }
+}
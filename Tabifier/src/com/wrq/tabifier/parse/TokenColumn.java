@@ -29,6 +29,7 @@ import org.apache.log4j.Logger;
 
 import javax.swing.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.ListIterator;
 import java.awt.*;
@@ -41,6 +42,8 @@ public class TokenColumn
 {
     private static final Logger logger = Logger.getLogger("com.wrq.tabifier.parse.TokenColumn");
     private final List/*<List<AlignableToken>>*/ tokenLists;
+    /** for each indent bias, the number of slots in its token list cleared by removeToken(). */
+    private int[] removedCounts = new int[0];
 
     public TokenColumn(ColumnSetting setting,
                        AlignableColumnNodeType nodeType,
@@ -57,98 +60,187 @@ public class TokenColumn
         return getTokenList(indentBias);
     }
 
-    private void applyTabstopToTokens(int tabstop, int indentBias)
+    /**
+     * The tokens of one indent bias which are not on immutable lines, with their widths and flags copied into parallel
+     * arrays.  Gathered once per alignment of a column so that the column can be aligned in one or two sweeps without
+     * re-reading each token's line and value.
+     */
+    private static final class TokenPass
     {
-        ListIterator/*<AlignableToken>*/ list = getTokens(indentBias).listIterator();
-        while (list.hasNext())
+        private static final byte LEADING_SPACE   = 1;  // token is empty or begins with a space
+        private static final byte RIGHT_JUSTIFIED = 2;
+        private static final byte TRAILING_SPACE  = 4;  // token is non-empty and ends with a space
+
+        final AlignableToken[] tokens;
+        final int[]            widths;
+        final byte[]           flags;
+        final int              size;
+        /** number of tokens of this indent bias, including those on immutable lines. */
+        final int              total;
+
+        TokenPass(List/*<AlignableToken>*/ list)
         {
-            AlignableToken token = (AlignableToken) list.next();
-            if (token.getLine().isImmutable())
-                continue;
-            token.setLinePosition(tabstop);
+            total  = list.size();
+            tokens = new AlignableToken[total];
+            widths = new int[total];
+            flags  = new byte[total];
+            int n = 0;
+            for (int i = 0; i < total; i++)
+            {
+                final AlignableToken token = (AlignableToken) list.get(i);
+                if (token.getLine().isImmutable())
+                    continue;
+                final String value = token.getValue();
+                byte         f     = 0;
+                if (value.length() == 0 || value.charAt(0) == ' ')
+                    f |= LEADING_SPACE;
+                if (token.isRightJustified())
+                    f |= RIGHT_JUSTIFIED;
+                if (value.length() > 0 && value.charAt(value.length() - 1) == ' ')
+                    f |= TRAILING_SPACE;
+                tokens[n] = token;
+                widths[n] = value.length();
+                flags [n] = f;
+                n++;
+            }
+            size = n;
+        }
+
+        boolean isAllTokensHaveLeadingSpace()
+        {
+            if (total == 0)
+                return false;
+            for (int i = 0; i < size; i++)
+            {
+                if ((flags[i] & LEADING_SPACE) == 0)
+                    return false;
+            }
+            return true;
         }
     }
 
+    /**
+     * Same test as TokenPass.isAllTokensHaveLeadingSpace(), made directly on the token list since only the answer is
+     * needed.
+     */
     public final boolean isAllTokensHaveLeadingSpace(int indentBias)
     {
-        boolean result = (getTokens(indentBias).size() > 0);
-        ListIterator/*<AlignableToken>*/ list = getTokens(indentBias).listIterator();
-        while (result && list.hasNext())
+        final List/*<AlignableToken>*/ tokens = getTokens(indentBias);
+        if (tokens.isEmpty())
+            return false;
+        for (int i = 0; i < tokens.size(); i++)
         {
-            AlignableToken token = (AlignableToken) list.next();
+            final AlignableToken token = (AlignableToken) tokens.get(i);
             if (token.getLine().isImmutable())
                 continue;
-            if (token.getWidth() > 0)
-            {
-                if (token.getValue().charAt(0) != ' ')
-                {
-                    result = false;
-                }
-            }
+            final String value = token.getValue();
+            if (value.length() > 0 && value.charAt(0) != ' ')
+                return false;
         }
-        return result;
+        return true;
     }
 
     /**
-     * Considering all tokens which end at column tabstop, return true if all have a trailing space.
+     * Once this column has been placed, record in the root column whether all tokens ending at this column's right
+     * edge have a trailing space, so that columns placed later can consult it.
      * // todo - should we only count trailing spaces that are there because of code style settings?
      */
-    public final boolean isAllTokensHaveTrailingSpace(int tabstop, int indentBias)
+    private void recordRightEdge(TokenPass pass)
     {
-        if (getTabstop() + getMaxWidth() == tabstop)
+        if (maxWidth == 0)
+            return;
+        final int edge   = tabstop + maxWidth;
+        boolean   result = true;
+        for (int i = 0; i < pass.size && result; i++)
         {
-            ListIterator/*<AlignableToken>*/ list = getTokens(indentBias).listIterator();
-            while (list.hasNext())
+            /** an empty token probably results from appending its value to the token to its left, so ignore it. */
+            if (pass.widths[i] > 0 && pass.tokens[i].getLinePosition() + pass.widths[i] == edge)
             {
-                AlignableToken token = (AlignableToken) list.next();
-                if (token.getLine().isImmutable()) continue;
-//                if (token.getWidth() == 0) return false;  // todo - an empty token probably results from appending its value to the token to the left, so should just ignore and continue
-                if (token.getLinePosition() + token.getWidth() == tabstop)
-                {
-                    if (token.getValue().charAt(token.getWidth() - 1) != ' ')
-                    {
-                        return false;
-                    }
-                }
+                result = (pass.flags[i] & TokenPass.TRAILING_SPACE) != 0;
             }
         }
-        return true;
+        getRoot().getTrailingSpaceEdges().add(edge, result);
     }
 
     public void addToken(AlignableToken token)
     {
-        List/*<AlignableToken>*/ tokens = getTokenList(token);
+        List/*<AlignableToken>*/ tokens = getSlots(token.getLine().getIndentBias());
+        token.setColumnSlot(tokens.size());
         tokens.add(token);
         token.setTokenColumn(this);
     }
 
-    private List/*<AlignableToken>*/ getTokenList(AlignableToken token)
+    /**
+     * @return the tokens of the given indent bias, after dropping any removed since the list was last read.
+     */
+    final List/*<AlignableToken>*/ getTokenList(int indentBias)
     {
-        int indentBias = token.getLine().getIndentBias();
-        return getTokenList(indentBias);
+        List/*<AlignableToken>*/ tokens = getSlots(indentBias);
+        if (removedCounts[indentBias] > 0)
+        {
+            compact(tokens, null);
+            removedCounts[indentBias] = 0;
+        }
+        return tokens;
     }
 
-    final List/*<AlignableToken>*/ getTokenList(int indentBias)
+    /**
+     * @return the token list of the given indent bias, which may contain null slots left by removeToken().
+     */
+    private List/*<AlignableToken>*/ getSlots(int indentBias)
     {
-        List/*<AlignableToken>*/ tokens;
         while (tokenLists.size() <= indentBias)
         {
             tokenLists.add(new ArrayList/*<AlignableToken>*/());
         }
-        tokens = (List/*<AlignableToken>*/) tokenLists.get(indentBias);
-        return tokens;
+        if (removedCounts.length < tokenLists.size())
+        {
+            removedCounts = Arrays.copyOf(removedCounts, tokenLists.size());
+        }
+        return (List/*<AlignableToken>*/) tokenLists.get(indentBias);
     }
 
+    /**
+     * Remove null slots, and unless except is null, the tokens of any line which is not immutable, in a single sweep.
+     * Slot indices of the remaining tokens are renumbered.
+     */
+    private static void compact(List/*<AlignableToken>*/ tokens, Line except)
+    {
+        int kept = 0;
+        for (int i = 0; i < tokens.size(); i++)
+        {
+            final AlignableToken token = (AlignableToken) tokens.get(i);
+            if (token == null || (except != null && !token.getLine().isImmutable()))
+                continue;
+            token.setColumnSlot(kept);
+            tokens.set(kept++, token);
+        }
+        tokens.subList(kept, tokens.size()).clear();
+    }
+
+    /**
+     * Removes a token in constant time by clearing its slot; the list is compacted the next time it is read.
+     */
     public final void removeToken(AlignableToken token)
     {
-        List/*<AlignableToken>*/ tokens = getTokenList(token);
-        tokens.remove(token);
+        final int                indentBias = token.getLine().getIndentBias();
+        List/*<AlignableToken>*/ tokens     = getSlots(indentBias);
+        final int                slot       = token.getColumnSlot();
+        if (slot < tokens.size() && tokens.get(slot) == token)
+        {
+            tokens.set(slot, null);
+            removedCounts[indentBias]++;
+        }
+        else
+        {
+            tokens.remove(token);
+        }
         token.setTokenColumn(null);
     }
 
     public final void align(int indentBias)
     {
-        boolean isAligned = getColumnSetting().isAligned();
+        boolean isAligned = snapshot.isAligned(getColumnSetting());
         /**
          * This column may belong (be a descendant of) another column setting such as a parameter whose alignment
          * supersedes this column setting. This situation is indicated by the presence of a marker object of
@@ -172,7 +264,7 @@ public class TokenColumn
             }
             if (isFirstInSequence)
             {
-                isAligned = parent.getColumnSetting().isAligned();
+                isAligned = snapshot.isAligned(parent.getColumnSetting());
             }
         }
         if (!isAligned)
@@ -180,44 +272,46 @@ public class TokenColumn
             handleUnalignedTokens(indentBias);
             return;
         }
-        super.align(indentBias);
-        applyTabstopToTokens(tabstop, indentBias);
-        calculateMaxWidth(true, indentBias);
-        if (tabstop > 0 || maxWidth > 0)
-        {
-            logger.debug("aligned column " + getName() + " of " + sequenceHead.getName() + ", tabstop=" + tabstop +
-                    ", maxWidth=" + maxWidth);
-        }
+        final TokenPass pass = new TokenPass(getTokens(indentBias));
+        super.align(indentBias, pass.isAllTokensHaveLeadingSpace());
         /**
-         * Handle right-justified tokens.  Make one pass through all the tokens to calculate the widest right-justified
-         * token.  Make a second pass right-justifying all other such tokens to the widest one's final column.  This
+         * Place every token at the tabstop, and in the same sweep find the column width and the widest right-justified
+         * token.  A second sweep right-justifies the other such tokens to the widest one's final column.  This
          * right-justifies numeric values relative only to each other, not to the widest token in the entire token
-         * column.
+         * column, so the column width is unaffected.
          */
+        int widest        = 0;
         int widestRJToken = 0;
-        ListIterator/*<AlignableToken>*/ li = getTokens(indentBias).listIterator();
-        while (li.hasNext())
+        for (int i = 0; i < pass.size; i++)
         {
-            AlignableToken token = (AlignableToken) li.next();
-            if (token.getLine().isImmutable())
-                continue;
-            if (token.isRightJustified())
-            {
-                if (widestRJToken < token.getWidth())
-                    widestRJToken = token.getWidth();
-            }
+            final int width = pass.widths[i];
+            pass.tokens[i].setLinePosition(tabstop);
+            if (width > widest)
+                widest = width;
+            if ((pass.flags[i] & TokenPass.RIGHT_JUSTIFIED) != 0 && width > widestRJToken)
+                widestRJToken = width;
         }
-        li = getTokens(indentBias).listIterator();
-        while (li.hasNext())
+        maxWidth = widest;
+        if (sequenceHead != null)
         {
-            AlignableToken token = (AlignableToken) li.next();
-            if (token.getLine().isImmutable())
-                continue;
-            if (token.isRightJustified())
+            sequenceHead.calculateWidth(indentBias);
+        }
+        if (tabstop > 0 || maxWidth > 0)
+        {
+            logger.debug("aligned column " + getName() + " of " + sequenceHead.getName() + ", tabstop=" + tabstop +
+                    ", maxWidth=" + maxWidth);
+        }
+        if (widestRJToken > 0)
+        {
+            for (int i = 0; i < pass.size; i++)
             {
-                token.setLinePosition(token.getLinePosition() + widestRJToken - token.getWidth());
+                if ((pass.flags[i] & TokenPass.RIGHT_JUSTIFIED) != 0)
+                {
+                    pass.tokens[i].setLinePosition(tabstop + widestRJToken - pass.widths[i]);
+                }
             }
         }
+        recordRightEdge(pass);
     }
 
     /**
@@ -286,6 +380,7 @@ public class TokenColumn
         }
         this.tabstop = determineTabstop(this);
         calculateMaxWidth(false, indentBias);
+        recordRightEdge(new TokenPass(getTokens(indentBias)));
         if (displayDebug)
         {
             logger.debug("setting column " + getName() + " of " + sequenceHead.getName() + " tabstop to " +
@@ -310,7 +405,7 @@ public class TokenColumn
          * If the token in this column begins with an alphanumeric and the previous non-blank token in this column ends
          * with an alphanumeric, add a space to the previous non-blank token.
          */
-        if (setting.get() && setting.getCharacters() != 0)
+        if (snapshot.isAligned(setting) && snapshot.getCharacters(setting) != 0)
         {
             return;
         }
@@ -389,20 +484,13 @@ public class TokenColumn
         super.clearTokens(except, indentBias);
         if (except != null)
         {
-            ListIterator/*<AlignableToken>*/ tokenList = getTokens(indentBias).listIterator();
-            while (tokenList.hasNext())
-            {
-                AlignableToken token = (AlignableToken) tokenList.next();
-                if (!token.getLine().isImmutable())
-                {
-                    tokenList.remove();
-                }
-            }
+            compact(getSlots(indentBias), except);
         }
         else
         {
-            getTokens(indentBias).clear();
+            getSlots(indentBias).clear();
         }
+        removedCounts[indentBias] = 0;
     }
 
     public final boolean determineNodesToDump(int indentBias)
@@ -411,6 +499,11 @@ public class TokenColumn
         return includeInDump;
     }
 
+    public final int countNodes()
+    {
+        return 1;
+    }
+
     public final void dumpDetails(String prefix, int indentBias)
     {
         String abbr = abbreviated(prefix);
@@ -444,6 +537,7 @@ public class TokenColumn
                 ListIterator tli = tlist.listIterator();
                 while (tli.hasNext()) {
                     AlignableToken token = (AlignableToken) tli.next();
+                    if (token == null) continue;
                     JLabel tokenLabel = new JLabel("token:'" + token.getValue() + "', pos=" +
                                                    token.getLinePosition() + ", width=" + token.getWidth());
                     tokenLabel.setFont(new Font("Monospaced", Font.PLAIN, 12));
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.tabifier.parse;
+
+import java.util.Arrays;
+
+/**
+ * Records, for one alignment pass over a column tree, whether all tokens ending at a given right edge have a trailing
+ * space.  Each token column adds its right edge once it has been placed, so that a column being placed later can look
+ * up the edge at which it would start instead of searching the tree for columns ending there.
+ */
+final class TrailingSpaceEdges
+{
+    private static final byte ALL_TRAILING   = 1;
+    private static final byte SOME_UNSPACED  = 2;
+
+    private byte[] edges = new byte[128];
+    private int    maxEdge = -1;
+
+    /**
+     * Notes that a token column ending at the given position has been placed.
+     *
+     * @param edge                 tabstop plus width of the column.
+     * @param allHaveTrailingSpace true if all its tokens ending at that position have a trailing space.
+     */
+    void add(int edge, boolean allHaveTrailingSpace)
+    {
+        if (edge >= edges.length)
+        {
+            edges = Arrays.copyOf(edges, Math.max(edge + 1, edges.length * 2));
+        }
+        if (edges[edge] != SOME_UNSPACED)
+        {
+            edges[edge] = allHaveTrailingSpace ? ALL_TRAILING : SOME_UNSPACED;
+        }
+        if (edge > maxEdge)
+        {
+            maxEdge = edge;
+        }
+    }
+
+    /**
+     * @return true if all tokens ending at the given position, in columns placed so far, have a trailing space.  True
+     *         if no column placed so far ends there.
+     */
+    boolean isAllTokensHaveTrailingSpace(int edge)
+    {
+        return edge < 0 || edge > maxEdge || edges[edge] != SOME_UNSPACED;
+    }
+
+    void clear()
+    {
+        if (maxEdge >= 0)
+        {
+            Arrays.fill(edges, 0, maxEdge + 1, (byte) 0);
+            maxEdge = -1;
+        }
+    }
+}
@@ -71,6 +71,7 @@ public class BooleanSetting
 
     public final void set(final boolean b)
     {
+        checkMutable();
         final boolean changed = (value != b);
         value = b;
         if (changed)
@@ -90,6 +90,7 @@ public class ColumnSetting
 
     public final void setCharacters(final int c)
     {
+        checkMutable();
         nCharacters = c;
         notifyChangeListeners();
     }
@@ -101,6 +102,7 @@ public class ColumnSetting
 
     public final void setTabs(final boolean t)
     {
+        checkMutable();
         tabs = t;
         notifyChangeListeners();
     }
@@ -70,6 +70,7 @@ public final class IntegerSetting extends Setting
 
     public final void set(final int v)
     {
+        checkMutable();
         final boolean changed = (value != v);
         value = v;
         if (changed)
@@ -53,6 +53,7 @@ public final class RearrangeableColumnSetting
 
     public void setRearrange(final boolean rearrange)
     {
+        checkMutable();
         this.rearrange = rearrange;
         notifyChangeListeners();
     }
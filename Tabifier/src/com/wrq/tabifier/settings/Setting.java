@@ -31,6 +31,7 @@ abstract public class Setting
 {
     final String settingName;
     private Settings settings; // settings to which this setting belongs
+    int index = -1;            // position of this setting within its settings; see SettingsSnapshot
 
     public Setting(final String settingName)
     {
@@ -43,6 +44,17 @@ abstract public class Setting
         this.settings = settings;
     }
 
+    /**
+     * Settings copied for the duration of a tabifier run are read-only; see Settings.frozenCopy().
+     */
+    final void checkMutable()
+    {
+        if (settings != null && settings.isFrozen())
+        {
+            throw new IllegalStateException("setting " + settingName + " belongs to a read-only copy of the settings");
+        }
+    }
+
     final void notifyChangeListeners()
     {
         /**
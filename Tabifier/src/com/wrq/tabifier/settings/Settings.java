@@ -39,6 +39,8 @@ abstract public class Settings
     private ArrayList/*<Setting>*/ settingsList;
     private HashMap/*<String, Setting>*/ settingsByName;
     private final ArrayList/*<ISettingsChangeListener>*/ changeListeners;
+    private boolean frozen;
+    private SettingsSnapshot snapshot; // non-null only when frozen
 
     public Settings()
     {
@@ -50,6 +52,7 @@ abstract public class Settings
     final void addSetting(final Setting s)
     {
         s.setOwner(this);
+        s.index = settingsList.size();
         settingsList.add(s);
         settingsByName.put(s.settingName, s);
     }
@@ -96,6 +99,50 @@ abstract public class Settings
         return false;
     }
 
+    /**
+     * Two Settings objects which are equal (see above) have the same fingerprint, so the fingerprint may serve as a
+     * compact cache key for results computed under these settings.
+     *
+     * @return 64-bit hash of the names and externalized values of all settings.
+     */
+    public final long fingerprint()
+    {
+        return snapshot().fingerprint();
+    }
+
+    /**
+     * @return the current values of all settings.  For a frozen copy the snapshot is taken once and shared;
+     *         otherwise a new snapshot is taken on each call.
+     */
+    public final SettingsSnapshot snapshot()
+    {
+        return frozen ? snapshot : new SettingsSnapshot(settingsList);
+    }
+
+    /**
+     * Returns a read-only copy of these settings, to be used for the duration of one tabifier run.  Any attempt to
+     * change a setting of the copy throws IllegalStateException, so the copy may be shared between threads while the
+     * user edits the original in the settings dialog.  If these settings are already frozen, they are returned as is.
+     *
+     * @return frozen copy of these settings.
+     */
+    public final Settings frozenCopy()
+    {
+        if (frozen)
+        {
+            return this;
+        }
+        final Settings result = deepCopy();
+        result.snapshot = new SettingsSnapshot(result.settingsList);
+        result.frozen   = true;
+        return result;
+    }
+
+    public final boolean isFrozen()
+    {
+        return frozen;
+    }
+
     /**
      * Give subclasses a chance to initialize any variables that may point to settings.
      */
@@ -104,6 +151,8 @@ abstract public class Settings
     protected final Object clone() throws CloneNotSupportedException
     {
         final Settings result = (Settings) super.clone();
+        result.frozen = false;
+        result.snapshot = null;
         result.settingsList = new ArrayList/*<Setting>*/(settingsList.size());
         result.settingsByName = new HashMap/*<String, Setting>*/(settingsList.size());
         // now duplicate settings list and map.
@@ -137,6 +186,10 @@ abstract public class Settings
      */
     public final void readExternal(final Element entry)
     {
+        if (frozen)
+        {
+            throw new IllegalStateException("cannot read into a read-only copy of the settings");
+        }
         final Iterator i = settingsList.listIterator();
         while (i.hasNext())
         {
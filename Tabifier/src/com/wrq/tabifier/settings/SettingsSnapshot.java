@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.tabifier.settings;
+
+import com.wrq.tabifier.util.Fingerprint;
+
+import java.util.List;
+
+/**
+ * Immutable, compact copy of the values of a Settings object, taken once per tabifier run.  Values are stored in
+ * bitsets and primitive arrays indexed by each setting's position in its Settings, so that the alignment loops can
+ * read them without chasing Setting objects.  Any Setting of the Settings from which the snapshot was taken, or of a
+ * copy of those Settings, may be used to look up its value.
+ * <p/>
+ * The snapshot also carries a 64-bit fingerprint of all values, equal to Settings.fingerprint() at the time the
+ * snapshot was taken, for use as a cache key.
+ */
+public final class SettingsSnapshot
+{
+    private final long[]   values;     // BooleanSetting (and ColumnSetting) values
+    private final long[]   tabs;       // ColumnSetting.isTabs()
+    private final long[]   rearrange;  // RearrangeableColumnSetting.isRearrange()
+    private final int[]    numbers;    // IntegerSetting values and ColumnSetting.getCharacters()
+    private final int[]    indents;    // ColumnSetting.getAdditionalIndentLevel()
+    private final String[] strings;    // StringSetting values
+    private final long     fingerprint;
+
+    SettingsSnapshot(final List/*<Setting>*/ settingsList)
+    {
+        final int         n  = settingsList.size();
+        final Fingerprint fp = new Fingerprint();
+        values    = new long[(n + 63) >> 6];
+        tabs      = new long[values.length];
+        rearrange = new long[values.length];
+        numbers   = new int[n];
+        indents   = new int[n];
+        strings   = new String[n];
+        for (int i = 0; i < n; i++)
+        {
+            final Setting s = (Setting) settingsList.get(i);
+            if (s instanceof BooleanSetting)
+            {
+                setBit(values, i, ((BooleanSetting) s).get());
+            }
+            if (s instanceof ColumnSetting)
+            {
+                final ColumnSetting cs = (ColumnSetting) s;
+                setBit(tabs, i, cs.isTabs());
+                numbers[i] = cs.getCharacters();
+                indents[i] = cs.getAdditionalIndentLevel();
+            }
+            if (s instanceof RearrangeableColumnSetting)
+            {
+                setBit(rearrange, i, ((RearrangeableColumnSetting) s).isRearrange());
+            }
+            if (s instanceof IntegerSetting)
+            {
+                numbers[i] = ((IntegerSetting) s).get();
+            }
+            if (s instanceof StringSetting)
+            {
+                strings[i] = ((StringSetting) s).get();
+            }
+            fp.add(s.settingName);
+            fp.add(s.writeValue());
+        }
+        fingerprint = fp.get();
+    }
+
+    private static void setBit(final long[] bits, final int index, final boolean value)
+    {
+        if (value)
+        {
+            bits[index >> 6] |= 1L << index;
+        }
+    }
+
+    private static boolean getBit(final long[] bits, final int index)
+    {
+        return (bits[index >> 6] & (1L << index)) != 0;
+    }
+
+    public boolean get(final BooleanSetting setting)
+    {
+        return getBit(values, setting.index);
+    }
+
+    public int get(final IntegerSetting setting)
+    {
+        return numbers[setting.index];
+    }
+
+    public String get(final StringSetting setting)
+    {
+        return strings[setting.index];
+    }
+
+    public boolean isAligned(final ColumnSetting setting)
+    {
+        return getBit(values, setting.index);
+    }
+
+    public int getCharacters(final ColumnSetting setting)
+    {
+        return numbers[setting.index];
+    }
+
+    public boolean isTabs(final ColumnSetting setting)
+    {
+        return getBit(tabs, setting.index);
+    }
+
+    public int getAdditionalIndentLevel(final ColumnSetting setting)
+    {
+        return indents[setting.index];
+    }
+
+    public boolean isRearrange(final RearrangeableColumnSetting setting)
+    {
+        return getBit(rearrange, setting.index);
+    }
+
+    /**
+     * Snapshot equivalent of ColumnSetting.apply().
+     */
+    public int apply(final ColumnSetting setting, int column, final int tab_spacing, final boolean hasLeadingSpace)
+    {
+        final int nCharacters = numbers[setting.index];
+        if (getBit(tabs, setting.index))
+        {
+            column = ((column + nCharacters * tab_spacing) / tab_spacing) * tab_spacing;
+        }
+        else
+            column += nCharacters;
+        if (nCharacters > 0 && hasLeadingSpace) column--;
+        return column;
+    }
+
+    public long fingerprint()
+    {
+        return fingerprint;
+    }
+}
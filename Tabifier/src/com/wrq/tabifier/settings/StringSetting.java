@@ -67,6 +67,7 @@ public final class StringSetting extends Setting
 
     public final void set(final String b)
     {
+        checkMutable();
         value = b;
     }
 
@@ -89,8 +89,10 @@ public final class TabifierSettings
     public IntegerSetting             method_call_similarity_threshold;
     public BooleanSetting             no_selection_behavior;
     public BooleanSetting             no_space_before_assignment_operators;
+    public BooleanSetting             record_run_statistics;                           // append statistics of each run to a file
     public BooleanSetting             right_justify_numeric_literals;
     public BooleanSetting             run_code_layout_on_preview_pane;
+    public BooleanSetting             show_run_statistics;                             // show statistics of each run in the status bar
     public BooleanSetting             spaceBetweenEmptyParentheses;
    /**
      * the start_of_column_sequence column setting is used for a dummy TokenColumn that sits at the beginning of
@@ -163,9 +165,11 @@ public final class TabifierSettings
     private static final String METHOD_CALL_SIMILARITY_THRESHOLD                 = "method_call_similarity_threshold";
     private static final String NO_SELECTION_BEHAVIOR                            = "no_selection_means_tabify_entire_file";
     public  static final String NO_SPACE_BEFORE_ASSIGNMENT_OPERATORS             = "no_space_before_assignment_operators";
+    private static final String RECORD_RUN_STATISTICS                            = "record_run_statistics";
     private static final String RIGHT_JUSTIFY_NUMERIC_LITERALS                   = "right_justify_numeric_literals";
     private static final String START_OF_COLUMN_SEQUENCE                         = "start_of_column_sequence";
     private static final String RUN_CODE_LAYOUT_ON_PREVIEW_PANE                  = "run_code_layout_on_preview_pane";
+    private static final String SHOW_RUN_STATISTICS                              = "show_run_statistics";
     public  static final String SPACE_BETWEEN_EMPTY_PARENTHESES                  = "spaceBetweenEmptyParentheses";
 
     public TabifierSettings()
@@ -233,8 +237,10 @@ public final class TabifierSettings
         addSetting(new IntegerSetting            (4,                    METHOD_CALL_SIMILARITY_THRESHOLD                                              ));
         addSetting(new BooleanSetting            (false,                NO_SELECTION_BEHAVIOR                                                         ));
         addSetting(new BooleanSetting            (false,                NO_SPACE_BEFORE_ASSIGNMENT_OPERATORS                                          ));
+        addSetting(new BooleanSetting            (false,                RECORD_RUN_STATISTICS                                                         ));
         addSetting(new BooleanSetting            (true,                 RIGHT_JUSTIFY_NUMERIC_LITERALS                                                ));
         addSetting(new BooleanSetting            (false,                RUN_CODE_LAYOUT_ON_PREVIEW_PANE                                               ));
+        addSetting(new BooleanSetting            (false,                SHOW_RUN_STATISTICS                                                           ));
         addSetting(new BooleanSetting            (false,                SPACE_BETWEEN_EMPTY_PARENTHESES                                               ));
         addSetting(new ColumnSetting             (true,                 START_OF_COLUMN_SEQUENCE                                                      ));
         initialize(                                                                                                                                    );
@@ -304,8 +310,10 @@ public final class TabifierSettings
         method_call_similarity_threshold                 = (IntegerSetting            ) find(METHOD_CALL_SIMILARITY_THRESHOLD                );
         no_selection_behavior                            = (BooleanSetting            ) find(NO_SELECTION_BEHAVIOR                           );
         no_space_before_assignment_operators             = (BooleanSetting            ) find(NO_SPACE_BEFORE_ASSIGNMENT_OPERATORS            );
+        record_run_statistics                            = (BooleanSetting            ) find(RECORD_RUN_STATISTICS                           );
         right_justify_numeric_literals                   = (BooleanSetting            ) find(RIGHT_JUSTIFY_NUMERIC_LITERALS                  );
         run_code_layout_on_preview_pane                  = (BooleanSetting            ) find(RUN_CODE_LAYOUT_ON_PREVIEW_PANE                 );
+        show_run_statistics                              = (BooleanSetting            ) find(SHOW_RUN_STATISTICS                             );
         spaceBetweenEmptyParentheses                     = (BooleanSetting            ) find(SPACE_BETWEEN_EMPTY_PARENTHESES                 );
         start_of_column_sequence                         = (ColumnSetting             ) find(START_OF_COLUMN_SEQUENCE                        );
     }
@@ -31,10 +31,13 @@
  */
 package com.wrq.tabifier;
 
+import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.components.ApplicationComponent;
 import com.intellij.openapi.options.Configurable;
 import com.intellij.openapi.project.ProjectManager;
+import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.JDOMExternalizable;
+import com.wrq.tabifier.daemon.TabifierDaemon;
 import com.wrq.tabifier.settings.TabifierSettings;
 import com.wrq.tabifier.ui.TabifierSettingsPanel;
 import org.apache.log4j.Level;
@@ -42,7 +45,13 @@ import org.apache.log4j.Logger;
 import org.jdom.Element;
 import org.jetbrains.annotations.NotNull;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.URL;
@@ -74,6 +83,8 @@ public final class tabifier
 
     private transient TabifierSettingsPanel preferences_panel_mbr;
     private           TabifierSettings      settings              = new TabifierSettings();
+    /** serves other processes if started with -Dtabifier.daemon=true; otherwise null. */
+    private transient TabifierDaemon        daemon;
 
     /**
      * if the Reformat plugin is present, obtain a reference to our TabifierUtility class, which will register
@@ -161,11 +172,67 @@ public final class tabifier
     public final void initComponent()
     {
         logger.debug("tabifier.initComponent()");
+        /**
+         * expose cumulative metrics of all runs to jconsole.  A second instance of the component (or a plugin
+         * reloaded without disposal) finds the MBean already registered, and leaves it.
+         */
+        try
+        {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName  name   = new ObjectName(TabifierMetrics.OBJECT_NAME);
+            if (!server.isRegistered(name))
+            {
+                server.registerMBean(TabifierMetrics.getInstance(), name);
+            }
+        }
+        catch (JMException e)
+        {
+            logger.info("could not register tabifier metrics MBean", e);
+        }
+        if (Boolean.getBoolean(TabifierDaemon.ENABLED_PROPERTY))
+        {
+            try
+            {
+                daemon = TabifierDaemon.start(new Computable<TabifierSettings>()
+                        {
+                            public TabifierSettings compute()
+                            {
+                                return getSettings();
+                            }
+                        },
+                        ProjectManager.getInstance().getDefaultProject(),
+                        Integer.getInteger(TabifierDaemon.PORT_PROPERTY, 0),
+                        Integer.getInteger(TabifierDaemon.IDLE_PROPERTY, TabifierDaemon.DEFAULT_IDLE_MINUTES) * 60000L,
+                        new File(PathManager.getSystemPath(), TabifierDaemon.PORT_FILE_NAME));
+            }
+            catch (IOException e)
+            {
+                logger.warn("could not start tabifier daemon", e);
+            }
+        }
     }
 
     public final void disposeComponent()
     {
         logger.debug("tabifier.disposeComponent()");
+        if (daemon != null)
+        {
+            daemon.stop();
+            daemon = null;
+        }
+        try
+        {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName  name   = new ObjectName(TabifierMetrics.OBJECT_NAME);
+            if (server.isRegistered(name))
+            {
+                server.unregisterMBean(name);
+            }
+        }
+        catch (JMException e)
+        {
+            logger.info("could not unregister tabifier metrics MBean", e);
+        }
     }
 
 // --------------------- Interface Configurable ---------------------
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.tabifier;
+
+import com.intellij.openapi.actionSystem.DataConstants;
+import com.intellij.openapi.actionSystem.DataContext;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.actionSystem.EditorAction;
+import com.intellij.openapi.editor.actionSystem.EditorActionHandler;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+
+import java.util.List;
+
+/**
+ * Reports whether the current file is already tabified, without changing it.  The caret is moved to the first
+ * misaligned line, if any.
+ */
+public final class tabifier_verify_action extends EditorAction
+{
+    /** maximum number of misaligned lines listed in the message. */
+    private static final int MAX_REPORTED = 10;
+
+    public tabifier_verify_action()
+    {
+        super(new EditorActionHandler()
+        {
+            public void execute(final Editor editor, final DataContext dataContext)
+            {
+                if (editor == null)
+                {
+                    return;
+                }
+                final Project            project       = (Project) dataContext.getData(DataConstants.PROJECT);
+                final List<Misalignment> misalignments = new TabifierActionHandler().verify(editor, dataContext);
+                if (misalignments.isEmpty())
+                {
+                    Messages.showInfoMessage(project, "File is correctly tabified.", "Tabifier");
+                    return;
+                }
+                editor.getCaretModel().moveToOffset(misalignments.get(0).getStartOffset());
+                final StringBuilder message = new StringBuilder("File is not correctly tabified; misaligned lines:\n");
+                for (int i = 0; i < misalignments.size() && i < MAX_REPORTED; i++)
+                {
+                    message.append("  line ").append(misalignments.get(i).getLineNumber() + 1).append('\n');
+                }
+                if (misalignments.size() > MAX_REPORTED)
+                {
+                    message.append("  ...and ").append(misalignments.size() - MAX_REPORTED).append(" more\n");
+                }
+                Messages.showWarningDialog(project, message.toString(), "Tabifier");
+            }
+        });
+    }
+}
@@ -52,6 +52,10 @@ extends TabifierSubsetPanel
                                         settings.run_code_layout_on_preview_pane              ),
                 new CheckboxDisplayInfo("Enable debug output"                                ,
                                         settings.debug                                        ),
+                new CheckboxDisplayInfo("Show statistics of each run in status bar"          ,
+                                        settings.show_run_statistics                          ),
+                new CheckboxDisplayInfo("Append statistics of each run to tabifier-stats.jsonl",
+                                        settings.record_run_statistics                        ),
                                                                                                 };
         addDisplayInfo(info, category);
 
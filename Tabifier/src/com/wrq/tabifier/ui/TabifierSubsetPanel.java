@@ -21,6 +21,7 @@
  */
 package com.wrq.tabifier.ui;
 
+import com.intellij.openapi.application.Application;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.command.CommandProcessor;
 import com.intellij.openapi.editor.Document;
@@ -28,12 +29,14 @@ import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.EditorFactory;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ProjectManager;
+import com.intellij.openapi.util.Computable;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiFileFactory;
 import com.intellij.psi.codeStyle.CodeStyleManager;
 import com.intellij.psi.codeStyle.CodeStyleSettings;
 import com.intellij.util.IncorrectOperationException;
 import com.wrq.tabifier.TabifierActionHandler;
+import com.wrq.tabifier.TabifierEngine;
 import com.wrq.tabifier.settings.*;
 import com.wrq.tabifier.util.Constraints;
 import org.apache.log4j.Level;
@@ -73,6 +76,20 @@ public abstract class TabifierSubsetPanel
     protected        final String           paneLabel;
     protected        final String           previewTextURI;
 
+    /** milliseconds to wait after a setting changes before refreshing the preview. */
+    private   static final int              PREVIEW_DELAY       = 150;
+    private          final Timer            previewTimer;
+    /** incremented each time a preview is started; results of earlier previews are discarded. */
+    private       volatile int              previewGeneration;
+    /**
+     * preview text as parsed by getPreviewPsiFile(), and the text, code layout option and code style it was parsed
+     * with.  Only used on the Swing thread.
+     */
+    private                PsiFile          previewPsiFile;
+    private                String           previewPsiText;
+    private                boolean          previewPsiLayout;
+    private                long             previewPsiCodeStyle;
+
     public TabifierSubsetPanel(final TabifierSettings externalSettings,
                                final Project          project,
                                      String           paneLabel,
@@ -82,6 +99,14 @@ public abstract class TabifierSubsetPanel
         settings            = externalSettings;
         this.paneLabel      = paneLabel;
         this.previewTextURI = previewTextURI;
+        previewTimer        = new Timer(PREVIEW_DELAY, new ActionListener()
+        {
+            public void actionPerformed(final ActionEvent e)
+            {
+                startPreview();
+            }
+        });
+        previewTimer.setRepeats(false);
         settings.addChangeListener(this);
         setLayout(new GridBagLayout());
         final Constraints constraints = new Constraints(GridBagConstraints.NORTHWEST);
@@ -204,8 +229,12 @@ public abstract class TabifierSubsetPanel
 
     public final void dispose()
     {
+        previewTimer.stop();
+        previewGeneration++;    // discard any preview still being computed
+        previewPsiFile = null;
         final EditorFactory editorFactory = EditorFactory.getInstance();
         editorFactory.releaseEditor(myEditor);
+        myEditor = null;
     }
 
     public final void settingsChange(final Setting setting)
@@ -216,7 +245,9 @@ public abstract class TabifierSubsetPanel
             Logger.getLogger("com.wrq.tabifier").setLevel(settings.debug.get() ? Level.DEBUG : Level.INFO);
         }
         else if (setting == settings.no_selection_behavior      ||
-                 setting == settings.chain_from_reformat_plugin   )
+                 setting == settings.chain_from_reformat_plugin ||
+                 setting == settings.show_run_statistics        ||
+                 setting == settings.record_run_statistics        )
         {
             // don't update preview pane; nothing affects appearance.
         }
@@ -291,76 +322,168 @@ public abstract class TabifierSubsetPanel
         myEditor = editorFactory.createViewer(doc);
     }
 
+    /**
+     * Schedules the preview pane to be refreshed.  Changes arriving within PREVIEW_DELAY milliseconds of each other
+     * (as when a spinner is held down) are coalesced into one refresh.
+     */
     private void updatePreview()
     {
-        final Runnable task = new Runnable()
+        previewTimer.restart();
+        logger.debug("exiting updatePreview");
+    }
+
+    /**
+     * Called on the Swing thread when the debounce timer expires.  Takes a read-only copy of the settings as they are
+     * now and the parsed preview text, and computes the tabified preview text from them on a pooled thread.  If
+     * settings change again before the computation completes, its result is discarded.
+     */
+    private void startPreview()
+    {
+        final int              generation  = ++previewGeneration;
+        final TabifierSettings snapshot    = (TabifierSettings) settings.frozenCopy();
+        final Application      application = ApplicationManager.getApplication();
+        final PsiFile          psiFile     = getPreviewPsiFile(snapshot.run_code_layout_on_preview_pane.get());
+        if (psiFile == null)
+        {
+            return;
+        }
+        application.executeOnPooledThread(new Runnable()
         {
             public void run()
             {
-                try
+                if (generation != previewGeneration)
                 {
-                    final Project            project  = ProjectManager.getInstance().getDefaultProject();
-                    final PsiFileFactory     factory  = PsiFileFactory.getInstance(project);
-                    final Document           document = myEditor.getDocument();
-                    /**
-                     * create a psiFile that contains the text from the preview pane.
-                     */
-                    final PsiFile psiFile = factory.createFileFromText("a.java", getPreviewText());
-                    /**
-                     * run the IDEA code layout reformatter on it.
-                     */
-                    if (settings.run_code_layout_on_preview_pane.get())
+                    return;
+                }
+                final String text = application.runReadAction(new Computable<String>()
+                {
+                    public String compute()
                     {
-                        final CodeStyleManager codeStyleManager = CodeStyleManager.getInstance(project);
-                        codeStyleManager.reformat(psiFile);
+                        return computePreview(snapshot, psiFile);
                     }
-                    /**
-                     * create a document that contains the newly reformatted text from the psiFile.
-                     */
-                    final EditorFactory editorFactory = EditorFactory.getInstance();
-                    final com.intellij.openapi.editor.Document doc2 = editorFactory.createDocument(psiFile.getText());
-                    /**
-                     * now tabify the reformatted text.
-                     */
-                    final TabifierActionHandler wa         = new TabifierActionHandler();
-                    final CodeStyleSettings     cssettings = TabifierActionHandler.getCodeStyleSettings(project);
-                    wa.tabifyPsiFile(psiFile                              ,
-                                     0                                    ,
-                                     psiFile.getTextRange().getEndOffset(),
-                                     cssettings                           ,
-                                     settings                             ,
-                                     doc2                                  );
-                    /**
-                     * And place the tabified text into the preview pane.
-                     */
-                    String s = doc2.getText();
-                    document.replaceString(0, document.getTextLength(), s);
+                });
+                SwingUtilities.invokeLater(new Runnable()
+                {
+                    public void run()
+                    {
+                        showPreview(generation, text);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Tabifies the parsed preview text according to the given settings.  Runs on a pooled thread within a read
+     * action, and only reads the PsiFile.  Only the column tree and formatting stages are repeated for each change of
+     * settings; parsing and code layout are reused from getPreviewPsiFile().
+     *
+     * @return tabified text.
+     */
+    private String computePreview(final TabifierSettings snapshot, final PsiFile psiFile)
+    {
+        final Project        project = ProjectManager.getInstance().getDefaultProject();
+        /**
+         * now tabify the reformatted text, applying the edits to a copy of it.
+         */
+        final TabifierEngine engine  = TabifierEngine.create(snapshot, project);
+        return TabifierEngine.apply(psiFile.getText(), engine.format(psiFile, psiFile.getTextRange()));
+    }
+
+    /**
+     * Returns the preview text parsed into a PsiFile and, if requested, reformatted by the IDEA code layout.  Only
+     * tabifier settings change while the panel is shown, so the file is kept and reused until the preview text, the
+     * code layout option or the code style changes.  Runs on the Swing thread, where the code layout is run under a
+     * write action.  A file once returned is never modified: when anything changes, a new file is parsed and laid
+     * out, so preview computations still reading the old one are unaffected.
+     *
+     * @param runCodeLayout true if the IDEA code layout should be run on the preview text before tabifying it.
+     * @return parsed (and possibly reformatted) preview text, or null if the code layout failed.
+     */
+    private PsiFile getPreviewPsiFile(final boolean runCodeLayout)
+    {
+        final Project           project           = ProjectManager.getInstance().getDefaultProject();
+        final String            text              = getPreviewText();
+        final CodeStyleSettings codeStyleSettings = TabifierActionHandler.getCodeStyleSettings(project);
+        final long              codeStyle         = TabifierEngine.codeStyleFingerprint(codeStyleSettings);
+        if (previewPsiFile == null || !text.equals(previewPsiText) || runCodeLayout != previewPsiLayout ||
+            codeStyle != previewPsiCodeStyle)
+        {
+            final PsiFileFactory factory = PsiFileFactory.getInstance(project);
+            /**
+             * create a psiFile that contains the text from the preview pane.
+             */
+            final PsiFile psiFile = factory.createFileFromText("a.java", text);
+            /**
+             * run the IDEA code layout reformatter on it.
+             */
+            if (runCodeLayout && !reformat(project, psiFile))
+            {
+                return null;
+            }
+            previewPsiFile      = psiFile;
+            previewPsiText      = text;
+            previewPsiLayout    = runCodeLayout;
+            previewPsiCodeStyle = codeStyle;
+        }
+        return previewPsiFile;
+    }
+
+    /**
+     * Runs the IDEA code layout on a file not yet shared with any other thread.  Must be called on the Swing thread.
+     *
+     * @return false if the file could not be reformatted.
+     */
+    private static boolean reformat(final Project project, final PsiFile psiFile)
+    {
+        return ApplicationManager.getApplication().runWriteAction(new Computable<Boolean>()
+        {
+            public Boolean compute()
+            {
+                try
+                {
+                    CodeStyleManager.getInstance(project).reformat(psiFile);
+                    return Boolean.TRUE;
                 }
                 catch (IncorrectOperationException e)
                 {
                     logger.error(e); // Can't actually happen if preview text is correct.
+                    return Boolean.FALSE;
                 }
             }
-        };
+        }).booleanValue();
+    }
 
-        SwingUtilities.invokeLater(new Runnable()
+    /**
+     * Places the tabified text into the preview pane, unless a newer preview has been started since this one or
+     * the pane has been disposed.  Runs on the Swing thread.
+     */
+    private void showPreview(final int generation, final String text)
+    {
+        if (generation != previewGeneration || myEditor == null)
+        {
+            logger.debug("discarding stale preview " + generation);
+            return;
+        }
+        final Document document = myEditor.getDocument();
+        final Runnable task     = new Runnable()
         {
             public void run()
             {
-                ApplicationManager.getApplication().runWriteAction(new Runnable()
-                {
-                    public void run()
-                    {
-                        final CommandProcessor x3;
-                        x3 = CommandProcessor.getInstance();
-                        logger.debug("runWriteAction(UpdatePreview) task executing");
-                        x3.executeCommand(project, task, "UpdatePreview", null);
-                        logger.debug("runWriteAction(UpdatePreview) task finished");
-                    }
-                });
+                document.replaceString(0, document.getTextLength(), text);
+            }
+        };
+        ApplicationManager.getApplication().runWriteAction(new Runnable()
+        {
+            public void run()
+            {
+                final CommandProcessor x3;
+                x3 = CommandProcessor.getInstance();
+                logger.debug("runWriteAction(UpdatePreview) task executing");
+                x3.executeCommand(project, task, "UpdatePreview", null);
+                logger.debug("runWriteAction(UpdatePreview) task finished");
             }
         });
-        logger.debug("exiting updatePreview");
     }
 
 
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.tabifier.util;
+
+/**
+ * Accumulates a 64-bit FNV-1a hash over a sequence of primitive values and strings.  Used to build cache keys from
+ * document text and from settings, where String.hashCode()'s 32 bits would collide too readily.
+ */
+public final class Fingerprint
+{
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME        = 0x100000001b3L;
+
+    private long hash = OFFSET_BASIS;
+
+    public Fingerprint add(final char c)
+    {
+        hash ^= c & 0xff;
+        hash *= PRIME;
+        hash ^= c >>> 8;
+        hash *= PRIME;
+        return this;
+    }
+
+    public Fingerprint add(final int i)
+    {
+        for (int shift = 0; shift < 32; shift += 8)
+        {
+            hash ^= (i >>> shift) & 0xff;
+            hash *= PRIME;
+        }
+        return this;
+    }
+
+    public Fingerprint add(final long l)
+    {
+        add((int) l);
+        return add((int) (l >>> 32));
+    }
+
+    public Fingerprint add(final boolean b)
+    {
+        hash ^= b ? 1 : 0;
+        hash *= PRIME;
+        return this;
+    }
+
+    /**
+     * Adds the characters of the string followed by its length, so that adjacent strings cannot run together.
+     */
+    public Fingerprint add(final CharSequence s)
+    {
+        if (s == null)
+        {
+            return add(-1);
+        }
+        final int length = s.length();
+        for (int i = 0; i < length; i++)
+        {
+            add(s.charAt(i));
+        }
+        return add(length);
+    }
+
+    public long get()
+    {
+        return hash;
+    }
+}
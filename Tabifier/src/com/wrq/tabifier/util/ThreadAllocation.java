@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.tabifier.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Reads the number of bytes allocated by the current thread, where the JVM supports it (HotSpot's
+ * com.sun.management.ThreadMXBean).  Used to account the allocations of each stage of a tabifier run.
+ */
+public final class ThreadAllocation
+{
+    private static final com.sun.management.ThreadMXBean bean = findBean();
+
+    private ThreadAllocation()
+    {
+    }
+
+    private static com.sun.management.ThreadMXBean findBean()
+    {
+        final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean instanceof com.sun.management.ThreadMXBean)
+        {
+            final com.sun.management.ThreadMXBean result = (com.sun.management.ThreadMXBean) threadBean;
+            if (result.isThreadAllocatedMemorySupported())
+            {
+                if (!result.isThreadAllocatedMemoryEnabled())
+                {
+                    result.setThreadAllocatedMemoryEnabled(true);
+                }
+                return result;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if allocations of the current thread can be counted.
+     */
+    public static boolean isSupported()
+    {
+        return bean != null;
+    }
+
+    /**
+     * @return total bytes allocated by the current thread since it started, or zero if not supported.
+     */
+    public static long currentThreadBytes()
+    {
+        return bean == null ? 0 : bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
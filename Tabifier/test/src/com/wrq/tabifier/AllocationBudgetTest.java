@@ -0,0 +1,195 @@
+/**
+ * Id$
+ *
+ * Tabifier (major release 2) plugin for IntelliJ IDEA.  Based on Jordan Zimmerman's work in release 1, but
+ * completely rewritten to support more flexible alignment for any type of syntactic arrangement.
+ *
+ * Source code may be freely copied and reused.  Please copy credits, and send any bug fixes to the author.
+ *
+ * @author Dave Kriewall, WRQ, Inc.
+ * September, 2003
+ */
+package com.wrq.tabifier;
+
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.codeStyle.CodeStyleSettings;
+import com.intellij.psi.codeStyle.CodeStyleSettingsManager;
+import com.intellij.testFramework.LightCodeInsightTestCase;
+import com.wrq.tabifier.cache.TabifyResultCache;
+import com.wrq.tabifier.columnizer.DocumentParser;
+import com.wrq.tabifier.settings.TabifierSettings;
+import com.wrq.tabifier.util.ThreadAllocation;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * Keeps the bytes allocated per line by each stage of the tabifier within a budget.  Each file of a fixed corpus is
+ * tabified repeatedly with the caches cleared, and the allocations of parsing (DocumentParser, excluding alignment and
+ * formatting), alignment (ColumnNodeAligner) and formatting (LineFormatter) are averaged over all lines.  A stage
+ * fails when it exceeds its budget.
+ * <p/>
+ * The budgets are read from AllocationBudgets.properties in the test data directory.  Run with
+ * -Dtabifier.allocation.calibrate=true to measure the corpus instead of checking it; the measured values plus MARGIN
+ * are then written back to that file, to be checked in.  Recalibrate when a change reduces allocations, so that the
+ * reduction is kept.
+ */
+public final class AllocationBudgetTest
+        extends LightCodeInsightTestCase
+{
+    private static final Logger   logger                = Logger.getLogger("com.wrq.tabifier.AllocationBudgetTest");
+    private static final String   BUDGETS               = "/com/wrq/tabifier/AllocationBudgets.properties";
+    /**
+     * headroom added to the measured values when calibrating, to absorb differences between JVMs and IDEA builds.
+     */
+    private static final double   MARGIN                = 0.15;
+    private static final int      ITERATIONS            = 10;
+    private static final String[] CORPUS                = {
+            "AnnotationTest1",
+            "AnonymousInnerClassTest",
+            "AssignmentAlignmentTest1",
+            "ClassAlignmentTest1",
+            "CommentAlignmentTest1",
+            "ContributedTest1",
+            "ContributedTest2",
+            "ContributedTest3",
+            "ContributedTest4",
+            "ContributedTest5",
+            "ContributedTest6",
+            "ContributedTest7",
+            "DeclarationAlignmentTest1",
+            "MethodCallAlignmentTest1",
+                                                          };
+
+    private TabifierSettings  ts;
+    private CodeStyleSettings css;
+    private long              parseBytes;
+    private long              alignBytes;
+    private long              formatBytes;
+
+    protected final void setUp() throws Exception
+    {
+        super.setUp();
+        Logger.getLogger("com.wrq.tabifier").setLevel(Level.INFO);
+        ts  = new TabifierSettings();
+        css = CodeStyleSettingsManager.getInstance().getCurrentSettings().clone();
+    }
+
+    public final void testAllocationBudgets() throws Exception
+    {
+        final boolean calibrate = Boolean.getBoolean("tabifier.allocation.calibrate");
+        if (!ThreadAllocation.isSupported())
+        {
+            logger.warn("this JVM cannot count allocations per thread; allocation budgets not checked");
+            return;
+        }
+        long lines = 0;
+        for (String name : CORPUS)
+        {
+            configureByFile("/com/wrq/tabifier/parse/" + name + ".java");
+            final PsiFile file = getFile();
+            /** the first run loads classes and fills lazily computed PSI state; don't count it. */
+            tabify(file, false);
+            for (int i = 0; i < ITERATIONS; i++)
+            {
+                tabify(file, true);
+            }
+            lines += ITERATIONS * countLines(file.getText());
+        }
+        final long parse  = parseBytes  / lines;
+        final long align  = alignBytes  / lines;
+        final long format = formatBytes / lines;
+        logger.info("bytes per line: parse=" + parse + ", align=" + align + ", format=" + format);
+        final File budgetFile = new File(getTestDataPath() + BUDGETS);
+        final Properties budgets = new Properties();
+        if (calibrate)
+        {
+            budgets.setProperty("parse",  String.valueOf(withMargin(parse )));
+            budgets.setProperty("align",  String.valueOf(withMargin(align )));
+            budgets.setProperty("format", String.valueOf(withMargin(format)));
+            final OutputStream out = new FileOutputStream(budgetFile);
+            try
+            {
+                budgets.store(out, "bytes allocated per line, measured by AllocationBudgetTest plus " +
+                                   Math.round(MARGIN * 100) + "% margin");
+            }
+            finally
+            {
+                out.close();
+            }
+            return;
+        }
+        final InputStream in = new FileInputStream(budgetFile);
+        try
+        {
+            budgets.load(in);
+        }
+        finally
+        {
+            in.close();
+        }
+        assertWithinBudget("DocumentParser",    parse,  budgets, "parse" );
+        assertWithinBudget("ColumnNodeAligner", align,  budgets, "align" );
+        assertWithinBudget("LineFormatter",     format, budgets, "format");
+    }
+
+    private static long withMargin(final long bytesPerLine)
+    {
+        return (long) Math.ceil(bytesPerLine * (1 + MARGIN));
+    }
+
+    /**
+     * @param count true to add the allocations of this run to the totals.
+     */
+    private void tabify(final PsiFile file, final boolean count)
+    {
+        TabifyResultCache.clear();
+        final DocumentParser cp = new DocumentParser(0, file.getTextRange().getEndOffset(), css, ts, 4,
+                                                     false, false, 4);
+        cp.setCountAllocations(true);
+        final long before = ThreadAllocation.currentThreadBytes();
+        file.accept(cp);
+        final long visited = ThreadAllocation.currentThreadBytes() - before;
+        cp.getEdits();
+        if (!count)
+        {
+            return;
+        }
+        parseBytes  += visited - cp.getAlignBytes() - cp.getFormatBytes();
+        alignBytes  += cp.getAlignBytes();
+        formatBytes += cp.getFormatBytes();
+    }
+
+    private static int countLines(final String text)
+    {
+        int result = 1;
+        for (int i = 0; i < text.length(); i++)
+        {
+            if (text.charAt(i) == '\n') result++;
+        }
+        return result;
+    }
+
+    private static void assertWithinBudget(final String     stage,
+                                           final long       bytesPerLine,
+                                           final Properties budgets,
+                                           final String     key) throws IOException
+    {
+        final String value = budgets.getProperty(key);
+        if (value == null)
+        {
+            throw new IOException("no '" + key + "' budget in " + BUDGETS +
+                                  "; run with -Dtabifier.allocation.calibrate=true to measure one");
+        }
+        final long budget = Long.parseLong(value.trim());
+        assertTrue(stage + " allocated " + bytesPerLine + " bytes per line; budget is " + budget,
+                   bytesPerLine <= budget);
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Id$
+ *
+ * Tabifier (major release 2) plugin for IntelliJ IDEA.  Based on Jordan Zimmerman's work in release 1, but
+ * completely rewritten to support more flexible alignment for any type of syntactic arrangement.
+ *
+ * Source code may be freely copied and reused.  Please copy credits, and send any bug fixes to the author.
+ *
+ * @author Dave Kriewall, WRQ, Inc.
+ * September, 2003
+ */
+package com.wrq.tabifier;
+
+import com.wrq.tabifier.cache.CleanFileCache;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+
+/**
+ * Tests that the record of clean files survives a save, merges saves of concurrent runs, and ignores anything which
+ * no longer matches.
+ */
+public class CleanFileCacheTest
+        extends TestCase
+{
+    private File dir;
+    private File file;
+
+    protected final void setUp() throws Exception
+    {
+        super.setUp();
+        dir = File.createTempFile("CleanFileCacheTest", "");
+        assertTrue(dir.delete() && dir.mkdir());
+        file = new File(dir, "clean-files");
+    }
+
+    protected final void tearDown() throws Exception
+    {
+        final File[] files = dir.listFiles();
+        if (files != null)
+        {
+            for (File f : files)
+            {
+                f.delete();
+            }
+        }
+        dir.delete();
+        super.tearDown();
+    }
+
+    public final void testSaveAndLoad() throws Exception
+    {
+        final CleanFileCache cache = CleanFileCache.load(file);
+        cache.markClean("src/A.java", "class A {}", 17L);
+        cache.markClean("src/with space/B.java", "class B {}", 17L);
+        cache.save();
+        final CleanFileCache loaded = CleanFileCache.load(file);
+        assertEquals(2, loaded.size());
+        assertTrue(loaded.isClean("src/A.java", "class A {}", 17L));
+        assertTrue(loaded.isClean("src/with space/B.java", "class B {}", 17L));
+    }
+
+    public final void testMismatchIsNotClean() throws Exception
+    {
+        final CleanFileCache cache = CleanFileCache.load(file);
+        cache.markClean("src/A.java", "class A {}", 17L);
+        assertFalse("content changed", cache.isClean("src/A.java", "class A { }", 17L));
+        assertFalse("settings changed", cache.isClean("src/A.java", "class A {}", 18L));
+        assertFalse("other file", cache.isClean("src/B.java", "class A {}", 17L));
+    }
+
+    public final void testForget() throws Exception
+    {
+        final CleanFileCache cache = CleanFileCache.load(file);
+        cache.markClean("src/A.java", "class A {}", 17L);
+        cache.save();
+        cache.forget("src/A.java");
+        cache.save();
+        assertEquals(0, CleanFileCache.load(file).size());
+    }
+
+    public final void testConcurrentSavesMerge() throws Exception
+    {
+        final CleanFileCache first  = CleanFileCache.load(file);
+        final CleanFileCache second = CleanFileCache.load(file);
+        first.markClean("src/A.java", "class A {}", 17L);
+        second.markClean("src/B.java", "class B {}", 17L);
+        first.save();
+        second.save();
+        assertEquals("second run sees entries saved by first", 2, second.size());
+        final CleanFileCache loaded = CleanFileCache.load(file);
+        assertTrue(loaded.isClean("src/A.java", "class A {}", 17L));
+        assertTrue(loaded.isClean("src/B.java", "class B {}", 17L));
+        for (String name : dir.list())
+        {
+            assertFalse("temporary file left behind: " + name, name.endsWith(".tmp"));
+        }
+    }
+
+    public final void testOtherVersionIgnored() throws Exception
+    {
+        final CleanFileCache cache = CleanFileCache.load(file);
+        cache.markClean("src/A.java", "class A {}", 17L);
+        cache.save();
+        final String text = read(file);
+        write(file, "tabifier-clean-cache 0.0" + text.substring(text.indexOf('\n')));
+        assertEquals(0, CleanFileCache.load(file).size());
+    }
+
+    public final void testCorruptFileIgnored() throws Exception
+    {
+        write(file, "tabifier-clean-cache " + tabifier.VERSION + "\nnot a number\n1 2\n");
+        assertEquals(0, CleanFileCache.load(file).size());
+    }
+
+    private static String read(final File f) throws IOException
+    {
+        return new String(Files.readAllBytes(f.toPath()), "UTF-8");
+    }
+
+    private static void write(final File f, final String text) throws IOException
+    {
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(f), "UTF-8");
+        try
+        {
+            writer.write(text);
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+}
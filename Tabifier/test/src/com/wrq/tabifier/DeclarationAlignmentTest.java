@@ -17,12 +17,15 @@ import com.intellij.psi.PsiFile;
 import com.intellij.psi.codeStyle.CodeStyleSettings;
 import com.intellij.psi.codeStyle.CodeStyleSettingsManager;
 import com.intellij.testFramework.LightCodeInsightTestCase;
+import com.wrq.tabifier.cache.TabifyResultCache;
 import com.wrq.tabifier.settings.TabifierSettings;
 import org.apache.log4j.ConsoleAppender;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.apache.log4j.PatternLayout;
 
+import java.util.List;
+
 /**
  * Test end-to-end parsing-to-alignment of declarations.
  */
@@ -61,6 +64,59 @@ public class DeclarationAlignmentTest
         super.checkResultByFile("/com/wrq/tabifier/parse/DeclarationAlignmentResult1.java");
     }
 
+    public final void testVerifyMisaligned() throws Exception
+    {
+        configureByFile("/com/wrq/tabifier/parse/DeclarationAlignmentTest1.java");
+        final PsiFile file = getFile();
+        ts.align_assignment_operators.set(true);
+        ts.align_modifiers.setRearrange(false);
+        ts.align_trailing_comments.set(true);
+        ts.align_variable_names.set(true);
+        ts.align_variable_types.set(true);
+        final TabifierActionHandler wa = new TabifierActionHandler();
+        final List<Misalignment> misalignments = wa.verify(file, 0, file.getTextRange().getEndOffset(), css, ts);
+        assertFalse("no misalignments reported", misalignments.isEmpty());
+        super.checkResultByFile("/com/wrq/tabifier/parse/DeclarationAlignmentTest1.java");
+    }
+
+    public final void testVerifyAligned() throws Exception
+    {
+        configureByFile("/com/wrq/tabifier/parse/DeclarationAlignmentResult1.java");
+        final PsiFile file = getFile();
+        ts.align_assignment_operators.set(true);
+        ts.align_modifiers.setRearrange(false);
+        ts.align_trailing_comments.set(true);
+        ts.align_variable_names.set(true);
+        ts.align_variable_types.set(true);
+        final TabifierActionHandler wa = new TabifierActionHandler();
+        final List<Misalignment> misalignments = wa.verify(file, 0, file.getTextRange().getEndOffset(), css, ts);
+        assertTrue("misalignments reported in tabified file: " + misalignments, misalignments.isEmpty());
+    }
+
+    public final void testRunStatistics() throws Exception
+    {
+        configureByFile("/com/wrq/tabifier/parse/DeclarationAlignmentTest1.java");
+        final PsiFile file = getFile();
+        ts.align_assignment_operators.set(true);
+        ts.align_modifiers.setRearrange(false);
+        ts.align_trailing_comments.set(true);
+        ts.align_variable_names.set(true);
+        ts.align_variable_types.set(true);
+        TabifyResultCache.clear();
+        final Document              doc   = PsiDocumentManager.getInstance(getProject()).getDocument(file);
+        final TabifierActionHandler wa    = new TabifierActionHandler();
+        final RunStatistics         stats = wa.tabifyPsiFile(file, 0, file.getTextRange().getEndOffset(), css, ts, doc);
+        assertFalse(stats.isCached());
+        assertTrue("lines: "        + stats.getLines(),       stats.getLines()       > 0                       );
+        assertTrue("tokens: "       + stats.getTokens(),      stats.getTokens()      >= stats.getLines()       );
+        assertTrue("line groups: "  + stats.getLineGroups(),  stats.getLineGroups()  > 0                       );
+        assertTrue("alignments: "   + stats.getAlignments(),  stats.getAlignments()  >= stats.getLineGroups()  );
+        assertTrue("column nodes: " + stats.getColumnNodes(), stats.getColumnNodes() > 0                       );
+        assertTrue("edits: "        + stats.getEdits(),       stats.getEdits()       > 0                       );
+        assertTrue(stats.toJson(0), stats.toJson(0).startsWith("{\"time\":0,\"file\":\""));
+        super.checkResultByFile("/com/wrq/tabifier/parse/DeclarationAlignmentResult1.java");
+    }
+
     public final void testAlignedModifiers() throws Exception
     {
         configureByFile("/com/wrq/tabifier/parse/DeclarationAlignmentTest2.java");
@@ -0,0 +1,133 @@
+/**
+ * Id$
+ *
+ * Tabifier (major release 2) plugin for IntelliJ IDEA.  Based on Jordan Zimmerman's work in release 1, but
+ * completely rewritten to support more flexible alignment for any type of syntactic arrangement.
+ *
+ * Source code may be freely copied and reused.  Please copy credits, and send any bug fixes to the author.
+ *
+ * @author Dave Kriewall, WRQ, Inc.
+ * September, 2003
+ */
+package com.wrq.tabifier;
+
+import com.intellij.psi.PsiFile;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.wrq.tabifier.cache.TabifyResultCache;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+
+/**
+ * Prints the run time of the tabifier against the size of each shape of generated source, as comma separated values
+ * suitable for plotting.  Superlinear behavior shows as a curve bending upward.  Also prints the peak heap retained
+ * while tabifying a large source.  Since it takes a while, the benchmark only runs when the system property
+ * tabifier.benchmark is true.
+ */
+public final class ScalingBenchmarkTest
+        extends ScalingTestCase
+{
+    private static final int[] SIZES              = {100, 200, 400, 800, 1600, 3200};
+    /**
+     * Each level of nesting adds several frames to the parsers' recursion, so nested calls are kept as shallow as in
+     * ScalingTest; a few thousand levels would overflow the stack.
+     */
+    private static final int[] NESTED_CALLS_SIZES = {5, 10, 20, 40, 80, 160};
+    /** size of the source tabified by testPrintPeakRetainedHeap(); roughly its number of lines. */
+    private static final int   PEAK_HEAP_LINES    = 50000;
+
+    public final void testPrintScalingTable() throws Exception
+    {
+        if (!Boolean.getBoolean("tabifier.benchmark"))
+        {
+            return;
+        }
+        System.out.println("shape,n,millis");
+        for (SyntheticSource.Shape shape : SyntheticSource.SHAPES)
+        {
+            for (int n : shape == SyntheticSource.NESTED_CALLS ? NESTED_CALLS_SIZES : SIZES)
+            {
+                final long nanos = medianNanos(shape, n, 2, 5);
+                System.out.println(shape + "," + n + "," + (nanos / 1000000.0));
+            }
+        }
+    }
+
+    /**
+     * Prints the most heap in use after any garbage collection during one run over a generated source of ordinary
+     * members, less the heap in use after a full collection just before the run; that is, the peak heap retained by
+     * the run, as closely as collections can show it.  Young collections leave old garbage in place, so the figure is
+     * an upper bound.  Run with a small young generation (-Xmn16m, say) for more collections, hence a closer bound.
+     */
+    public final void testPrintPeakRetainedHeap() throws Exception
+    {
+        if (!Boolean.getBoolean("tabifier.benchmark"))
+        {
+            return;
+        }
+        configureFromFileText("Synthetic.java",
+                              SyntheticSource.generate(SyntheticSource.MEMBERS, PEAK_HEAP_LINES, SEED));
+        final PsiFile               file    = getFile();
+        final TabifierActionHandler handler = new TabifierActionHandler();
+        /** the first run loads classes and fills lazily computed PSI state; don't count it. */
+        handler.computeEdits(file, 0, file.getTextRange().getEndOffset(), css, ts);
+        TabifyResultCache.clear();
+        final long[]               peak     = new long[1];
+        final NotificationListener listener = new NotificationListener()
+        {
+            public void handleNotification(final Notification notification, final Object handback)
+            {
+                if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType()))
+                {
+                    return;
+                }
+                long used = 0;
+                final GarbageCollectionNotificationInfo info =
+                        GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                for (MemoryUsage usage : info.getGcInfo().getMemoryUsageAfterGc().values())
+                {
+                    used += usage.getUsed();
+                }
+                synchronized (peak)
+                {
+                    peak[0] = Math.max(peak[0], used);
+                }
+            }
+        };
+        System.gc();
+        final long baseline = usedHeap();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            ((NotificationEmitter) gc).addNotificationListener(listener, null, null);
+        }
+        try
+        {
+            handler.computeEdits(file, 0, file.getTextRange().getEndOffset(), css, ts);
+            /** the last collection of the run may still be reported. */
+            Thread.sleep(500);
+        }
+        finally
+        {
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            {
+                ((NotificationEmitter) gc).removeNotificationListener(listener);
+            }
+        }
+        synchronized (peak)
+        {
+            System.out.println(PEAK_HEAP_LINES + " lines: peak retained heap " +
+                               (peak[0] == 0 ? "not seen (no collection during the run)"
+                                             : (peak[0] - baseline) / 1024 + " KB"));
+        }
+    }
+
+    private static long usedHeap()
+    {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
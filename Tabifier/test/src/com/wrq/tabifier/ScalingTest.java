@@ -0,0 +1,75 @@
+/**
+ * Id$
+ *
+ * Tabifier (major release 2) plugin for IntelliJ IDEA.  Based on Jordan Zimmerman's work in release 1, but
+ * completely rewritten to support more flexible alignment for any type of syntactic arrangement.
+ *
+ * Source code may be freely copied and reused.  Please copy credits, and send any bug fixes to the author.
+ *
+ * @author Dave Kriewall, WRQ, Inc.
+ * September, 2003
+ */
+package com.wrq.tabifier;
+
+import java.util.Arrays;
+
+/**
+ * Catches superlinear paths in the pipeline:  for each shape of generated source, the run time is measured at sizes
+ * n, 2n, 4n and 8n, and the median of the three doubling ratios must stay under MAX_DOUBLING_RATIO.  Linear behavior
+ * gives a ratio of about 2 and n log n slightly more, while a quadratic path gives 4.  The fixed cost of a run only
+ * lowers the ratios, so small sizes cannot cause a false failure.  To limit noise, each time is the median of several
+ * runs after warmup, the median ratio discards a single disturbed size, and a shape which exceeds the bound is
+ * measured again before failing.
+ */
+public final class ScalingTest
+        extends ScalingTestCase
+{
+    private static final double MAX_DOUBLING_RATIO = 3;
+    private static final int    DOUBLINGS          = 3;
+    private static final int    WARMUPS            = 3;
+    private static final int    REPETITIONS        = 7;
+    private static final int    ATTEMPTS           = 3;
+
+    public final void testFieldsScaleLinearly() throws Exception
+    {
+        assertScalesLinearly(SyntheticSource.FIELDS, 200);
+    }
+
+    public final void testPolyadicExpressionScalesLinearly() throws Exception
+    {
+        assertScalesLinearly(SyntheticSource.POLYADIC, 200);
+    }
+
+    /**
+     * Each level of nesting adds several frames to the parsers' recursion, so this shape is kept shallower.
+     */
+    public final void testNestedCallsScaleLinearly() throws Exception
+    {
+        assertScalesLinearly(SyntheticSource.NESTED_CALLS, 20);
+    }
+
+    public final void testArrayInitializerScalesLinearly() throws Exception
+    {
+        assertScalesLinearly(SyntheticSource.ARRAY_INITIALIZER, 200);
+    }
+
+    private void assertScalesLinearly(final SyntheticSource.Shape shape, final int n) throws Exception
+    {
+        double best = Double.MAX_VALUE;
+        for (int attempt = 0; attempt < ATTEMPTS && best >= MAX_DOUBLING_RATIO; attempt++)
+        {
+            final double[] ratios = new double[DOUBLINGS];
+            long previous = medianNanos(shape, n, WARMUPS, REPETITIONS);
+            for (int i = 0; i < DOUBLINGS; i++)
+            {
+                final long current = medianNanos(shape, n << (i + 1), WARMUPS, REPETITIONS);
+                ratios[i] = (double) current / Math.max(previous, 1);
+                previous  = current;
+            }
+            Arrays.sort(ratios);
+            best = Math.min(best, ratios[DOUBLINGS / 2]);
+        }
+        assertTrue(shape + ": run time grew by a median factor of " + best + " per doubling of size from " + n +
+                   " to " + (n << DOUBLINGS), best < MAX_DOUBLING_RATIO);
+    }
+}
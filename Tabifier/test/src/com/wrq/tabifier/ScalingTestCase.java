@@ -0,0 +1,74 @@
+/**
+ * Id$
+ *
+ * Tabifier (major release 2) plugin for IntelliJ IDEA.  Based on Jordan Zimmerman's work in release 1, but
+ * completely rewritten to support more flexible alignment for any type of syntactic arrangement.
+ *
+ * Source code may be freely copied and reused.  Please copy credits, and send any bug fixes to the author.
+ *
+ * @author Dave Kriewall, WRQ, Inc.
+ * September, 2003
+ */
+package com.wrq.tabifier;
+
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.codeStyle.CodeStyleSettings;
+import com.intellij.psi.codeStyle.CodeStyleSettingsManager;
+import com.intellij.testFramework.LightCodeInsightTestCase;
+import com.wrq.tabifier.cache.TabifyResultCache;
+import com.wrq.tabifier.settings.TabifierSettings;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import java.util.Arrays;
+
+/**
+ * Base of tests which time the whole tabifier pipeline over generated sources; see SyntheticSource.
+ */
+public abstract class ScalingTestCase
+        extends LightCodeInsightTestCase
+{
+    /** seed of all generated sources, so that timings of different runs are comparable. */
+    protected static final long SEED = 20031001L;
+
+    protected TabifierSettings  ts;
+    protected CodeStyleSettings css;
+
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        Logger.getLogger("com.wrq.tabifier").setLevel(Level.INFO);
+        ts  = new TabifierSettings();
+        css = CodeStyleSettingsManager.getInstance().getCurrentSettings().clone();
+    }
+
+    /**
+     * Tabifies a generated source repeatedly, with the result caches cleared before each run.
+     *
+     * @param warmups     runs made first and not timed, to let the JIT compile the pipeline.
+     * @param repetitions timed runs.
+     * @return median elapsed time of the timed runs, in nanoseconds.
+     */
+    protected final long medianNanos(final SyntheticSource.Shape shape,
+                                     final int                   n,
+                                     final int                   warmups,
+                                     final int                   repetitions) throws Exception
+    {
+        configureFromFileText("Synthetic.java", SyntheticSource.generate(shape, n, SEED));
+        final PsiFile               file    = getFile();
+        final TabifierActionHandler handler = new TabifierActionHandler();
+        final long[]                times   = new long[repetitions];
+        for (int i = -warmups; i < repetitions; i++)
+        {
+            TabifyResultCache.clear();
+            final long start = System.nanoTime();
+            handler.computeEdits(file, 0, file.getTextRange().getEndOffset(), css, ts);
+            if (i >= 0)
+            {
+                times[i] = System.nanoTime() - start;
+            }
+        }
+        Arrays.sort(times);
+        return times[repetitions / 2];
+    }
+}
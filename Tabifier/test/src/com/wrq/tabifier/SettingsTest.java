@@ -79,4 +79,35 @@ public final class SettingsTest
         final boolean equals = s.equals(clone);
         assertFalse("cloned settings mismatch", equals);
     }
+
+    public final void testFingerprint() throws Exception
+    {
+        final TabifierSettings s = new TabifierSettings();
+        final TabifierSettings clone = (TabifierSettings) s.deepCopy();
+        assertEquals("cloned settings fingerprint mismatch", s.fingerprint(), clone.fingerprint());
+        clone.align_assignment_operators.setTabs(
+                !s.align_assignment_operators.isTabs());
+        assertFalse("changed settings have same fingerprint", s.fingerprint() == clone.fingerprint());
+    }
+
+    public final void testFrozenCopy() throws Exception
+    {
+        final TabifierSettings s = new TabifierSettings();
+        final TabifierSettings frozen = (TabifierSettings) s.frozenCopy();
+        assertTrue("frozen copy mismatch", s.equals(frozen));
+        assertEquals("frozen copy fingerprint mismatch", s.fingerprint(), frozen.fingerprint());
+        assertEquals("snapshot value mismatch",
+                     s.align_assignment_operators.isAligned(),
+                     frozen.snapshot().isAligned(s.align_assignment_operators));
+        try
+        {
+            frozen.align_assignment_operators.setTabs(!s.align_assignment_operators.isTabs());
+            fail("frozen settings were changed");
+        }
+        catch (IllegalStateException expected)
+        {
+        }
+        s.align_assignment_operators.setTabs(!s.align_assignment_operators.isTabs());
+        assertFalse("frozen copy follows original", s.fingerprint() == frozen.fingerprint());
+    }
 }
@@ -0,0 +1,115 @@
+/**
+ * Id$
+ *
+ * Tabifier (major release 2) plugin for IntelliJ IDEA.  Based on Jordan Zimmerman's work in release 1, but
+ * completely rewritten to support more flexible alignment for any type of syntactic arrangement.
+ *
+ * Source code may be freely copied and reused.  Please copy credits, and send any bug fixes to the author.
+ *
+ * @author Dave Kriewall, WRQ, Inc.
+ * September, 2003
+ */
+package com.wrq.tabifier;
+
+import com.intellij.psi.codeStyle.CodeStyleSettingsManager;
+import com.intellij.testFramework.LightCodeInsightTestCase;
+import com.wrq.tabifier.settings.TabifierSettings;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+/**
+ * Test that tabifying a source in chunks gives the same result as tabifying it whole.
+ */
+public class StreamingTabifierTest
+        extends LightCodeInsightTestCase
+{
+    private static final int[]    CHUNK_SIZES = {1, 256, StreamingTabifier.DEFAULT_CHUNK_SIZE};
+    private static final String[] CORPUS      = {
+            "AnnotationTest1",
+            "AnonymousInnerClassTest",
+            "ClassAlignmentTest1",
+            "ContributedTest3",
+            "DeclarationAlignmentTest1",
+                                                };
+
+    private TabifierEngine engine;
+
+    protected final void setUp() throws Exception
+    {
+        super.setUp();
+        final TabifierSettings ts = new TabifierSettings();
+        ts.align_assignment_operators.set(true);
+        ts.align_trailing_comments.set(true);
+        ts.align_variable_names.set(true);
+        ts.align_variable_types.set(true);
+        engine = TabifierEngine.create(ts, CodeStyleSettingsManager.getInstance().getCurrentSettings());
+    }
+
+    public final void testBraceScanner() throws Exception
+    {
+        final String source = "package p;\n"                                        +
+                              "class A\n"                                           +
+                              "{\n"                                                 +
+                              "    int[] a = {1, 2};\n"                             +
+                              "    String b = \"}\"; char c = '{'; // }\n"          +
+                              "    /* } */ void m() { if (true) { } }\n"            +
+                              "    void n()\n"                                      +
+                              "    {\n"                                             +
+                              "    } void o() {\n"                                  +
+                              "    }\n"                                             +
+                              "}\n";
+        final int[]  expected = {StreamingTabifier.BraceScanner.NONE,
+                                 StreamingTabifier.BraceScanner.NONE,
+                                 StreamingTabifier.BraceScanner.BODY_START,
+                                 StreamingTabifier.BraceScanner.NONE,
+                                 StreamingTabifier.BraceScanner.NONE,
+                                 StreamingTabifier.BraceScanner.MEMBER_END,
+                                 StreamingTabifier.BraceScanner.NONE,
+                                 StreamingTabifier.BraceScanner.NONE,
+                                 StreamingTabifier.BraceScanner.NONE,
+                                 StreamingTabifier.BraceScanner.MEMBER_END,
+                                 StreamingTabifier.BraceScanner.TYPE_END};
+        final StreamingTabifier.BraceScanner scanner = new StreamingTabifier.BraceScanner();
+        int line = 0;
+        for (int i = 0; i < source.length(); i++)
+        {
+            scanner.next(source.charAt(i));
+            if (source.charAt(i) == '\n')
+            {
+                assertEquals("line " + (line + 1), expected[line], scanner.endLine());
+                line++;
+            }
+        }
+        assertEquals(expected.length, line);
+    }
+
+    public final void testSyntheticSource() throws Exception
+    {
+        final String source   = SyntheticSource.generate(SyntheticSource.MEMBERS, 400, ScalingTestCase.SEED);
+        final String expected = TabifierEngine.apply(source, engine.format(getProject(), source, null));
+        assertFalse("nothing to tabify", expected.equals(source));
+        for (int chunkSize : CHUNK_SIZES)
+        {
+            assertEquals("chunk size " + chunkSize, expected, stream(source, chunkSize));
+        }
+    }
+
+    public final void testCorpus() throws Exception
+    {
+        for (String name : CORPUS)
+        {
+            configureByFile("/com/wrq/tabifier/parse/" + name + ".java");
+            final String source   = getFile().getText();
+            final String expected = TabifierEngine.apply(source, engine.format(getFile(), getFile().getTextRange()));
+            assertEquals(name, expected, stream(source, 1));
+        }
+    }
+
+    private String stream(final String source, final int chunkSize) throws Exception
+    {
+        final StringWriter out = new StringWriter();
+        new StreamingTabifier(engine, getProject(), chunkSize).tabify(new StringReader(source), out);
+        return out.toString();
+    }
+}
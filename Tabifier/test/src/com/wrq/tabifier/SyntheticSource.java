@@ -0,0 +1,266 @@
+/**
+ * Id$
+ *
+ * Tabifier (major release 2) plugin for IntelliJ IDEA.  Based on Jordan Zimmerman's work in release 1, but
+ * completely rewritten to support more flexible alignment for any type of syntactic arrangement.
+ *
+ * Source code may be freely copied and reused.  Please copy credits, and send any bug fixes to the author.
+ *
+ * @author Dave Kriewall, WRQ, Inc.
+ * September, 2003
+ */
+package com.wrq.tabifier;
+
+import java.util.Random;
+
+/**
+ * Generates Java sources of a given size and shape, for scale testing.  Each shape stresses one part of the
+ * tabifier; the same shape, size and seed always produce the same source.
+ */
+final class SyntheticSource
+{
+    private static final String[] TYPES     = {"int", "long", "String", "Object", "List<String>", "double[]",
+                                               "Map<String, Integer>", "boolean"};
+    private static final String[] ACCESS    = {"", "public ", "protected ", "private "};
+    private static final String[] OTHERS    = {"static ", "final ", "transient ", "volatile "};
+    private static final String[] OPERATORS = {" + ", " - ", " * "};
+
+    /**
+     * Shape of a generated source.
+     */
+    static abstract class Shape
+    {
+        private final String name;
+
+        private Shape(final String name)
+        {
+            this.name = name;
+        }
+
+        /**
+         * Appends the body of the generated class.
+         *
+         * @param n size of the source; roughly the number of lines generated.
+         */
+        abstract void appendBody(StringBuilder sb, Random random, int n);
+
+        public final String toString()
+        {
+            return name;
+        }
+    }
+
+    /**
+     * n field declarations with modifiers in varying order, initializers, and trailing comments on most lines.
+     * Stresses ModifierTokenColumn and the declaration columns.
+     */
+    static final Shape FIELDS = new Shape("FIELDS")
+    {
+        void appendBody(final StringBuilder sb, final Random random, final int n)
+        {
+            for (int i = 0; i < n; i++)
+            {
+                sb.append("    ");
+                final String access = ACCESS[random.nextInt(ACCESS.length)];
+                final int    others = random.nextInt(1 << OTHERS.length);
+                final int    place  = random.nextInt(OTHERS.length + 1);
+                for (int j = 0; j <= OTHERS.length; j++)
+                {
+                    if (j == place)
+                    {
+                        sb.append(access);
+                    }
+                    if (j < OTHERS.length && (others & (1 << j)) != 0)
+                    {
+                        sb.append(OTHERS[j]);
+                    }
+                }
+                sb.append(TYPES[random.nextInt(TYPES.length)]).append(' ').append(identifier(random, "field", i));
+                if (random.nextInt(3) > 0)
+                {
+                    sb.append(" = ").append(random.nextInt(100000));
+                }
+                sb.append(';');
+                if (random.nextInt(4) > 0)
+                {
+                    sb.append(" // comment ").append(i);
+                }
+                sb.append('\n');
+            }
+        }
+    };
+
+    /**
+     * A single assignment whose right hand side is a polyadic expression of n terms, one per line.  Stresses
+     * PolyadicExpressionParser.
+     */
+    static final Shape POLYADIC = new Shape("POLYADIC")
+    {
+        void appendBody(final StringBuilder sb, final Random random, final int n)
+        {
+            sb.append("    int method()\n");
+            sb.append("    {\n");
+            sb.append("        int result = ").append(identifier(random, "term", 0)).append('\n');
+            for (int i = 1; i < n; i++)
+            {
+                sb.append("                   + ").append(identifier(random, "term", i));
+                if (random.nextInt(3) == 0)
+                {
+                    sb.append(OPERATORS[random.nextInt(OPERATORS.length)]).append(random.nextInt(1000));
+                }
+                sb.append('\n');
+            }
+            sb.append("                   ;\n");
+            sb.append("        return result;\n");
+            sb.append("    }\n");
+        }
+    };
+
+    /**
+     * Method calls nested n deep, one level per line, each with a few arguments.  Stresses ExpressionListParser and
+     * the nesting of method call columns.
+     */
+    static final Shape NESTED_CALLS = new Shape("NESTED_CALLS")
+    {
+        void appendBody(final StringBuilder sb, final Random random, final int n)
+        {
+            sb.append("    Object method()\n");
+            sb.append("    {\n");
+            sb.append("        return ");
+            for (int i = 0; i < n; i++)
+            {
+                sb.append(identifier(random, "call", i)).append('(');
+                final int arguments = random.nextInt(3);
+                for (int j = 0; j < arguments; j++)
+                {
+                    sb.append(random.nextInt(1000)).append(", ");
+                }
+                sb.append('\n');
+                for (int j = 0; j <= i; j++)
+                {
+                    sb.append("  ");
+                }
+                sb.append("        ");
+            }
+            sb.append("null");
+            for (int i = 0; i < n; i++)
+            {
+                sb.append(')');
+            }
+            sb.append(";\n");
+            sb.append("    }\n");
+        }
+    };
+
+    /**
+     * A two-dimensional array initializer of n rows of up to sixteen numbers of varying width.  Stresses array
+     * initializer alignment and right justification of numeric literals.
+     */
+    static final Shape ARRAY_INITIALIZER = new Shape("ARRAY_INITIALIZER")
+    {
+        void appendBody(final StringBuilder sb, final Random random, final int n)
+        {
+            sb.append("    static final int[][] TABLE = {\n");
+            for (int i = 0; i < n; i++)
+            {
+                sb.append("        {");
+                final int width = 1 + random.nextInt(16);
+                for (int j = 0; j < width; j++)
+                {
+                    if (j > 0)
+                    {
+                        sb.append(", ");
+                    }
+                    sb.append(random.nextInt(1 << random.nextInt(20)));
+                }
+                sb.append(i < n - 1 ? "},\n" : "}\n");
+            }
+            sb.append("    };\n");
+        }
+    };
+
+    /**
+     * Runs of fields, some with array initializers, separated by short methods and anonymous classes; roughly eight
+     * lines per member.  The shape of ordinary generated code, cut into chunks by StreamingTabifier.  Not one of
+     * SHAPES, since it stresses no particular parser.
+     */
+    static final Shape MEMBERS = new Shape("MEMBERS")
+    {
+        void appendBody(final StringBuilder sb, final Random random, final int n)
+        {
+            for (int i = 0; i < n / 8; i++)
+            {
+                final int fields = 1 + random.nextInt(4);
+                for (int j = 0; j < fields; j++)
+                {
+                    sb.append("    ").append(ACCESS[random.nextInt(ACCESS.length)]);
+                    if (random.nextInt(4) == 0)
+                    {
+                        sb.append("Object[] ").append(identifier(random, "table", i * 4 + j))
+                          .append(" = {").append(random.nextInt(1000)).append(", \"{\", '}'};\n");
+                    }
+                    else
+                    {
+                        sb.append(TYPES[random.nextInt(TYPES.length)]).append(' ')
+                          .append(identifier(random, "field", i * 4 + j))
+                          .append(" = ").append(random.nextInt(100000)).append("; // comment } ").append(j).append('\n');
+                    }
+                }
+                if (random.nextInt(3) == 0)
+                {
+                    sb.append("    Runnable ").append(identifier(random, "runnable", i)).append(" = new Runnable()\n");
+                    sb.append("    {\n");
+                    sb.append("        public void run() { }\n");
+                    sb.append("    };\n");
+                }
+                else
+                {
+                    sb.append("    /** returns a sum { */\n");
+                    sb.append("    int ").append(identifier(random, "method", i)).append("(int a, String bb)\n");
+                    sb.append("    {\n");
+                    sb.append("        int    x = a + ").append(random.nextInt(1000)).append(";\n");
+                    sb.append("        String yy = bb;\n");
+                    sb.append("        return x;\n");
+                    sb.append("    }\n");
+                }
+                sb.append('\n');
+            }
+        }
+    };
+
+    static final Shape[] SHAPES = {FIELDS, POLYADIC, NESTED_CALLS, ARRAY_INITIALIZER};
+
+    private SyntheticSource()
+    {
+    }
+
+    /**
+     * @param shape shape of the source.
+     * @param n     size of the source; roughly the number of lines generated.
+     * @param seed  seed of the random choices; equal seeds give equal sources.
+     * @return source of a class named Synthetic.
+     */
+    static String generate(final Shape shape, final int n, final long seed)
+    {
+        final StringBuilder sb = new StringBuilder(n * 48 + 64);
+        sb.append("public class Synthetic\n");
+        sb.append("{\n");
+        shape.appendBody(sb, new Random(seed), n);
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * @return an identifier of varying length, unique by index.
+     */
+    private static String identifier(final Random random, final String prefix, final int index)
+    {
+        final StringBuilder sb     = new StringBuilder(prefix);
+        final int           length = random.nextInt(8);
+        for (int i = 0; i < length; i++)
+        {
+            sb.append((char) ('a' + random.nextInt(26)));
+        }
+        return sb.append(index).toString();
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Id$
+ *
+ * Tabifier (major release 2) plugin for IntelliJ IDEA.  Based on Jordan Zimmerman's work in release 1, but
+ * completely rewritten to support more flexible alignment for any type of syntactic arrangement.
+ *
+ * Source code may be freely copied and reused.  Please copy credits, and send any bug fixes to the author.
+ *
+ * @author Dave Kriewall, WRQ, Inc.
+ * September, 2003
+ */
+package com.wrq.tabifier;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests that generated sources are reproducible and grow with their size parameter.
+ */
+public class SyntheticSourceTest
+        extends TestCase
+{
+    public final void testSameSeedSameSource() throws Exception
+    {
+        for (SyntheticSource.Shape shape : SyntheticSource.SHAPES)
+        {
+            assertEquals(shape.toString(),
+                         SyntheticSource.generate(shape, 50, 1234L),
+                         SyntheticSource.generate(shape, 50, 1234L));
+        }
+    }
+
+    public final void testDifferentSeedDifferentSource() throws Exception
+    {
+        for (SyntheticSource.Shape shape : SyntheticSource.SHAPES)
+        {
+            assertFalse(shape.toString(),
+                        SyntheticSource.generate(shape, 50, 1234L).equals(
+                        SyntheticSource.generate(shape, 50, 4321L)));
+        }
+    }
+
+    public final void testLinesGrowWithSize() throws Exception
+    {
+        for (SyntheticSource.Shape shape : SyntheticSource.SHAPES)
+        {
+            final int small = countLines(SyntheticSource.generate(shape, 100, 1L));
+            final int large = countLines(SyntheticSource.generate(shape, 400, 1L));
+            assertTrue(shape + ": " + small + " lines for 100, " + large + " lines for 400",
+                       large >= 4 * small - 40 && large <= 4 * small);
+        }
+    }
+
+    private static int countLines(final String text)
+    {
+        int result = 0;
+        for (int i = 0; i < text.length(); i++)
+        {
+            if (text.charAt(i) == '\n') result++;
+        }
+        return result;
+    }
+}
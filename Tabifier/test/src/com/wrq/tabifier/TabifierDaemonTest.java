@@ -0,0 +1,196 @@
+/**
+ * Id$
+ *
+ * Tabifier (major release 2) plugin for IntelliJ IDEA.  Based on Jordan Zimmerman's work in release 1, but
+ * completely rewritten to support more flexible alignment for any type of syntactic arrangement.
+ *
+ * Source code may be freely copied and reused.  Please copy credits, and send any bug fixes to the author.
+ *
+ * @author Dave Kriewall, WRQ, Inc.
+ * September, 2003
+ */
+package com.wrq.tabifier;
+
+import com.intellij.openapi.util.Computable;
+import com.intellij.psi.codeStyle.CodeStyleSettings;
+import com.intellij.psi.codeStyle.CodeStyleSettingsManager;
+import com.intellij.testFramework.LightCodeInsightTestCase;
+import com.wrq.tabifier.cache.TabifyResultCache;
+import com.wrq.tabifier.daemon.TabifierClient;
+import com.wrq.tabifier.daemon.TabifierDaemon;
+import com.wrq.tabifier.settings.TabifierSettings;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Arrays;
+import java.util.EnumSet;
+
+/**
+ * Test that the daemon tabifies as the engine does, follows code style changes, refuses clients without its token,
+ * keeps its port file private, and stops when idle, even with a connection left open.  Also logs the latency of a request for a 500 line file: the first request the daemon serves,
+ * made before anything else in the test tabifies, and the median of later ones.  Earlier tests in the same JVM may
+ * already have loaded the tabifier classes, so the first request is not necessarily a cold start.
+ */
+public class TabifierDaemonTest
+        extends LightCodeInsightTestCase
+{
+    private static final Logger logger      = Logger.getLogger("com.wrq.tabifier.TabifierDaemonTest");
+    private static final int    LINES       = 500;
+    private static final int    REPETITIONS = 10;
+
+    private TabifierSettings ts;
+    private File             portFile;
+    private TabifierDaemon   daemon;
+
+    protected final void setUp() throws Exception
+    {
+        super.setUp();
+        ts       = new TabifierSettings();
+        portFile = File.createTempFile("TabifierDaemonTest", ".port");
+    }
+
+    protected final void tearDown() throws Exception
+    {
+        if (daemon != null)
+        {
+            daemon.stop();
+        }
+        portFile.delete();
+        super.tearDown();
+    }
+
+    public final void testFormat() throws Exception
+    {
+        daemon = start(60000);
+        final String source = SyntheticSource.generate(SyntheticSource.FIELDS, LINES, ScalingTestCase.SEED);
+        final TabifierClient client = TabifierClient.connect(portFile);
+        try
+        {
+            TabifyResultCache.clear();
+            long start = System.nanoTime();
+            final String first = client.format("Synthetic.java", source);
+            final long   cold  = System.nanoTime() - start;
+            TabifyResultCache.clear();
+            final String expected = TabifierEngine.apply(source,
+                    TabifierEngine.create(ts, CodeStyleSettingsManager.getInstance().getCurrentSettings())
+                                  .format(getProject(), source, null));
+            assertEquals(expected, first);
+            final long[] warm = new long[REPETITIONS];
+            for (int i = 0; i < REPETITIONS; i++)
+            {
+                TabifyResultCache.clear();
+                start = System.nanoTime();
+                assertEquals(expected, client.format("Synthetic.java", source));
+                warm[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(warm);
+            logger.info(LINES + " lines: first request " + cold / 1000000 + " ms, later requests median " +
+                        warm[REPETITIONS / 2] / 1000000 + " ms");
+        }
+        finally
+        {
+            client.close();
+        }
+        assertEquals(REPETITIONS + 1, daemon.getRequestCount());
+        daemon.stop();
+        assertFalse("port file left behind", portFile.exists());
+    }
+
+    public final void testCodeStyleChange() throws Exception
+    {
+        daemon = start(60000);
+        final String            source = "class A\n{\n    void m()\n    {\n        a=1;\n        bb=2;\n    }\n}\n";
+        final CodeStyleSettings css    = TabifierActionHandler.getCodeStyleSettings(getProject());
+        final boolean           saved  = css.SPACE_AROUND_ASSIGNMENT_OPERATORS;
+        final TabifierClient    client = TabifierClient.connect(portFile);
+        try
+        {
+            final String before = client.format("A.java", source);
+            css.SPACE_AROUND_ASSIGNMENT_OPERATORS = !saved;
+            final String after  = client.format("A.java", source);
+            TabifyResultCache.clear();
+            assertEquals(TabifierEngine.apply(source, TabifierEngine.create(ts, css).format(getProject(), source, null)),
+                         after);
+            assertFalse("code style change ignored", before.equals(after));
+        }
+        finally
+        {
+            css.SPACE_AROUND_ASSIGNMENT_OPERATORS = saved;
+            client.close();
+        }
+    }
+
+    public final void testRejectsWrongToken() throws Exception
+    {
+        daemon = start(60000);
+        final TabifierClient client = new TabifierClient(daemon.getPort(), "not the token");
+        try
+        {
+            client.format("A.java", "class A {}\n");
+            fail("request served without the token");
+        }
+        catch (IOException e)
+        {
+            // expected: daemon closed the connection.
+        }
+        finally
+        {
+            client.close();
+        }
+        assertEquals(0, daemon.getRequestCount());
+    }
+
+    public final void testIdleTimeout() throws Exception
+    {
+        daemon = start(100);
+        for (int i = 0; i < 50 && !daemon.isStopped(); i++)
+        {
+            Thread.sleep(100);
+        }
+        assertTrue("daemon still running", daemon.isStopped());
+        assertFalse("port file left behind", portFile.exists());
+    }
+
+    public final void testIdleConnection() throws Exception
+    {
+        daemon = start(100);
+        final TabifierClient client = TabifierClient.connect(portFile);
+        try
+        {
+            for (int i = 0; i < 50 && !daemon.isStopped(); i++)
+            {
+                Thread.sleep(100);
+            }
+            assertTrue("daemon kept running for an idle connection", daemon.isStopped());
+        }
+        finally
+        {
+            client.close();
+        }
+    }
+
+    public final void testPortFilePermissions() throws Exception
+    {
+        daemon = start(60000);
+        if (!Files.getFileStore(portFile.toPath()).supportsFileAttributeView("posix"))
+        {
+            return;
+        }
+        assertEquals(EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE),
+                     Files.getPosixFilePermissions(portFile.toPath()));
+    }
+
+    private TabifierDaemon start(final long idleMillis) throws IOException
+    {
+        return TabifierDaemon.start(new Computable<TabifierSettings>()
+        {
+            public TabifierSettings compute()
+            {
+                return ts;
+            }
+        }, getProject(), 0, idleMillis, portFile);
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * Id$
+ *
+ * Tabifier (major release 2) plugin for IntelliJ IDEA.  Based on Jordan Zimmerman's work in release 1, but
+ * completely rewritten to support more flexible alignment for any type of syntactic arrangement.
+ *
+ * Source code may be freely copied and reused.  Please copy credits, and send any bug fixes to the author.
+ *
+ * @author Dave Kriewall, WRQ, Inc.
+ * September, 2003
+ */
+package com.wrq.tabifier;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.util.Computable;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.codeStyle.CodeStyleSettings;
+import com.intellij.psi.codeStyle.CodeStyleSettingsManager;
+import com.intellij.testFramework.LightCodeInsightTestCase;
+import com.wrq.tabifier.cache.TabifyResultCache;
+import com.wrq.tabifier.settings.TabifierSettings;
+
+/**
+ * Test that a TabifierEngine gives the same result as the action handler, from any thread, regardless of later
+ * changes to the settings it was built from.
+ */
+public class TabifierEngineTest
+        extends LightCodeInsightTestCase
+{
+    private static final int               THREADS = 4;
+    private              TabifierSettings  ts;
+    private              CodeStyleSettings css;
+
+    protected final void setUp() throws Exception
+    {
+        super.setUp();
+        ts = new TabifierSettings();
+        ts.right_justify_numeric_literals.set(false);
+        ts.align_assignment_operators.set(true);
+        ts.align_modifiers.setRearrange(false);
+        ts.align_trailing_comments.set(true);
+        ts.align_variable_names.set(true);
+        ts.align_variable_types.set(true);
+        css = CodeStyleSettingsManager.getInstance().getCurrentSettings().clone();
+        TabifyResultCache.clear();
+    }
+
+    public final void testFormatSource() throws Exception
+    {
+        configureByFile("/com/wrq/tabifier/parse/DeclarationAlignmentTest1.java");
+        final TabifierEngine engine = TabifierEngine.create(ts, css);
+        final String         source = getFile().getText();
+        final String         result = TabifierEngine.apply(source, engine.format(getProject(), source, null));
+        setText(result);
+        checkResultByFile("/com/wrq/tabifier/parse/DeclarationAlignmentResult1.java");
+    }
+
+    public final void testSettingsSnapshot() throws Exception
+    {
+        configureByFile("/com/wrq/tabifier/parse/DeclarationAlignmentTest1.java");
+        final PsiFile        file   = getFile();
+        final TabifierEngine engine = TabifierEngine.create(ts, css);
+        ts.align_variable_names.set(false);
+        ts.align_variable_types.set(false);
+        setText(TabifierEngine.apply(file.getText(), engine.format(file, file.getTextRange())));
+        checkResultByFile("/com/wrq/tabifier/parse/DeclarationAlignmentResult1.java");
+    }
+
+    public final void testConcurrentFormat() throws Exception
+    {
+        configureByFile("/com/wrq/tabifier/parse/DeclarationAlignmentTest1.java");
+        final PsiFile        file    = getFile();
+        final TabifierEngine engine  = TabifierEngine.create(ts, css);
+        final String         source  = file.getText();
+        final String[]       results = new String[THREADS];
+        final Thread[]       threads = new Thread[THREADS];
+        for (int i = 0; i < THREADS; i++)
+        {
+            final int index = i;
+            threads[i] = new Thread(new Runnable()
+            {
+                public void run()
+                {
+                    results[index] = ApplicationManager.getApplication().runReadAction(new Computable<String>()
+                    {
+                        public String compute()
+                        {
+                            /** start each thread with empty caches so that every one of them parses. */
+                            TabifyResultCache.clear();
+                            return TabifierEngine.apply(source, engine.format(getProject(), source, null));
+                        }
+                    });
+                }
+            }, "TabifierEngineTest-" + i);
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        for (int i = 1; i < THREADS; i++)
+        {
+            assertEquals("thread " + i, results[0], results[i]);
+        }
+        setText(results[0]);
+        checkResultByFile("/com/wrq/tabifier/parse/DeclarationAlignmentResult1.java");
+    }
+
+    /**
+     * Groups taken from the group cache must leave the lines after them as aligning the group would have.  The
+     * fixture repeats the same class, whose groups close while the next declaration's modifiers have already been
+     * parsed (and are rearranged with their column).  Even the first run takes the groups of the second and third
+     * class from the cache, so they must come out as the first class, which was aligned; and a second run, taking
+     * every group from the cache, must give the same text.
+     */
+    public final void testWarmGroupCacheMatchesColdRun() throws Exception
+    {
+        configureByFile("/com/wrq/tabifier/parse/GroupCacheTest1.java");
+        ts.align_modifiers.setRearrange(true);
+        final PsiFile        file   = getFile();
+        final TabifierEngine engine = TabifierEngine.create(ts, css);
+        final String         source = file.getText();
+        final String         cold   = TabifierEngine.apply(source, engine.format(file, file.getTextRange()));
+        /** keep the group cache, but not the whole-file result. */
+        TabifyResultCache.getFileCache().clear();
+        final long           hits   = TabifyResultCache.getGroupCache().getHits();
+        final String         warm   = TabifierEngine.apply(source, engine.format(file, file.getTextRange()));
+        assertTrue("no group was taken from the cache", TabifyResultCache.getGroupCache().getHits() > hits);
+        assertEquals(cold, warm);
+        final String[] classes = cold.split("static class \\w+");
+        assertEquals(classBody(classes[1]), classBody(classes[2]));
+        assertEquals(classBody(classes[1]), classBody(classes[3]));
+    }
+
+    /**
+     * @return text following a nested class name, up to the class's closing brace.
+     */
+    private static String classBody(final String text)
+    {
+        return text.substring(0, text.indexOf("\n    }"));
+    }
+
+    private void setText(final String text)
+    {
+        final Document doc = PsiDocumentManager.getInstance(getProject()).getDocument(getFile());
+        doc.replaceString(0, doc.getTextLength(), text);
+    }
+}
@@ -0,0 +1,257 @@
+/**
+ * Id$
+ *
+ * Tabifier (major release 2) plugin for IntelliJ IDEA.  Based on Jordan Zimmerman's work in release 1, but
+ * completely rewritten to support more flexible alignment for any type of syntactic arrangement.
+ *
+ * Source code may be freely copied and reused.  Please copy credits, and send any bug fixes to the author.
+ *
+ * @author Dave Kriewall, WRQ, Inc.
+ * September, 2003
+ */
+package com.wrq.tabifier;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.codeStyle.CodeStyleSettingsManager;
+import com.intellij.testFramework.LightCodeInsightTestCase;
+import com.wrq.tabifier.cache.TabifyEdit;
+import com.wrq.tabifier.cache.TabifyResultCache;
+import com.wrq.tabifier.lsp.Json;
+import com.wrq.tabifier.lsp.TabifierLanguageServer;
+import com.wrq.tabifier.settings.TabifierSettings;
+import org.apache.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Drives the language server as an editor would, through its input and output streams, and checks that its edits
+ * tabify documents as the engine does.  Also logs the latency of rangeFormatting of 20 lines of a 5000 line document.
+ * <p/>
+ * The server is given an in-process formatter that calls the engine directly, and its streams are byte arrays, so
+ * these tests cover the JSON-RPC framing, document tracking and range handling of the server.  They do not cover the
+ * path TabifierLanguageServer.main() takes, where each request crosses the loopback socket to the daemon through
+ * TabifierClient (see TabifierDaemonTest for the daemon), nor the cost of starting the server process.  The measured
+ * latency therefore leaves out the socket round trip.  The 20 ms target is only asserted when the system property
+ * tabifier.benchmark is true, since wall-clock times depend on the machine.
+ */
+public class TabifierLanguageServerTest
+        extends LightCodeInsightTestCase
+{
+    private static final Logger logger        = Logger.getLogger("com.wrq.tabifier.TabifierLanguageServerTest");
+    private static final String URI           = "file:///Synthetic.java";
+    private static final int    LINES         = 5000;
+    private static final int    RANGE_LINES   = 20;
+    private static final int    REPETITIONS   = 21;
+    /** target latency of rangeFormatting, in milliseconds. */
+    private static final long   TARGET_MILLIS = 20;
+
+    private TabifierEngine         engine;
+    private TabifierLanguageServer server;
+    private int                    nextId;
+
+    protected final void setUp() throws Exception
+    {
+        super.setUp();
+        final TabifierSettings ts = new TabifierSettings();
+        ts.align_assignment_operators.set(true);
+        ts.align_trailing_comments.set(true);
+        ts.align_variable_names.set(true);
+        ts.align_variable_types.set(true);
+        engine = TabifierEngine.create(ts, CodeStyleSettingsManager.getInstance().getCurrentSettings());
+        server = new TabifierLanguageServer(new TabifierLanguageServer.Formatter()
+        {
+            public List<TabifyEdit> format(final String path, final String source, final int start, final int end)
+            {
+                return ApplicationManager.getApplication().runReadAction(new Computable<List<TabifyEdit>>()
+                {
+                    public List<TabifyEdit> compute()
+                    {
+                        return engine.format(getProject(), source, new TextRange(start, end));
+                    }
+                });
+            }
+        });
+    }
+
+    public final void testSession() throws Exception
+    {
+        final String source = SyntheticSource.generate(SyntheticSource.MEMBERS, 400, ScalingTestCase.SEED);
+        final List<Map> responses = session(request("initialize", "{}"),
+                                            notification("initialized", "{}"),
+                                            didOpen(source),
+                                            request("textDocument/formatting", "{" + textDocument() + "}"),
+                                            request("shutdown", "null"),
+                                            notification("exit", "null"));
+        assertEquals(3, responses.size());
+        final Map capabilities = (Map) ((Map) responses.get(0).get("result")).get("capabilities");
+        assertEquals(Boolean.TRUE, capabilities.get("documentRangeFormattingProvider"));
+        final String expected = TabifierEngine.apply(source, engine.format(getProject(), source, null));
+        assertFalse("nothing to tabify", expected.equals(source));
+        assertEquals(expected, apply(source, (List) responses.get(1).get("result")));
+    }
+
+    public final void testRangeFormatting() throws Exception
+    {
+        final String source = SyntheticSource.generate(SyntheticSource.MEMBERS, LINES, ScalingTestCase.SEED);
+        session(didOpen(source));
+        final int    first    = LINES / 2;
+        final int    start    = lineStart(source, first);
+        final int    end      = lineStart(source, first + RANGE_LINES);
+        final String expected = TabifierEngine.apply(source,
+                engine.format(getProject(), source, new TextRange(start, end)));
+        final String request  = request("textDocument/rangeFormatting", "{" + textDocument() + ",\"range\":{" +
+                "\"start\":{\"line\":" + first + ",\"character\":0}," +
+                "\"end\":{\"line\":" + (first + RANGE_LINES) + ",\"character\":0}}}");
+        final long[] times    = new long[REPETITIONS];
+        List         edits    = null;
+        for (int i = 0; i < REPETITIONS; i++)
+        {
+            TabifyResultCache.clear();
+            final long t = System.nanoTime();
+            edits = (List) session(request).get(0).get("result");
+            times[i] = System.nanoTime() - t;
+        }
+        assertEquals(expected, apply(source, edits));
+        Arrays.sort(times);
+        final long median = times[REPETITIONS / 2];
+        logger.info("rangeFormatting of " + RANGE_LINES + " lines of " + LINES + " line document: median " +
+                    median / 1000 + " us");
+        if (Boolean.getBoolean("tabifier.benchmark"))
+        {
+            assertTrue("median rangeFormatting latency " + median / 1000 + " us exceeds " + TARGET_MILLIS + " ms",
+                       median <= TARGET_MILLIS * 1000000);
+        }
+    }
+
+    public final void testOnTypeFormatting() throws Exception
+    {
+        final String source = "class A\n"                         +
+                              "{\n"                               +
+                              "    int a = 1;\n"                  +
+                              "    String bb = \"x\";\n"          +
+                              "    void m()\n"                    +
+                              "    {\n"                           +
+                              "    }\n"                           +
+                              "}\n";
+        session(didOpen(source));
+        final List edits = (List) session(request("textDocument/onTypeFormatting", "{" + textDocument() +
+                ",\"position\":{\"line\":3,\"character\":20},\"ch\":\";\"}")).get(0).get("result");
+        final String expected = TabifierEngine.apply(source, engine.format(getProject(), source,
+                new TextRange(lineStart(source, 2), lineStart(source, 4))));
+        assertEquals(expected, apply(source, edits));
+    }
+
+    public final void testUnknownDocument() throws Exception
+    {
+        final Map response = session(request("textDocument/formatting",
+                "{\"textDocument\":{\"uri\":\"file:///Unknown.java\"}}")).get(0);
+        assertNotNull(response.get("error"));
+    }
+
+    private String didOpen(final String text)
+    {
+        return notification("textDocument/didOpen",
+                "{\"textDocument\":{\"uri\":\"" + URI + "\",\"languageId\":\"java\",\"version\":1,\"text\":" +
+                Json.write(text) + "}}");
+    }
+
+    private static String textDocument()
+    {
+        return "\"textDocument\":{\"uri\":\"" + URI + "\"}";
+    }
+
+    private String request(final String method, final String params)
+    {
+        return "{\"jsonrpc\":\"2.0\",\"id\":" + nextId++ + ",\"method\":\"" + method + "\",\"params\":" + params + "}";
+    }
+
+    private static String notification(final String method, final String params)
+    {
+        return "{\"jsonrpc\":\"2.0\",\"method\":\"" + method + "\",\"params\":" + params + "}";
+    }
+
+    /**
+     * Sends the messages to the server as an editor would on its standard input, and returns the responses it writes
+     * to its standard output.
+     */
+    private List<Map> session(final String... messages) throws IOException
+    {
+        final ByteArrayOutputStream in = new ByteArrayOutputStream();
+        for (String message : messages)
+        {
+            final byte[] content = message.getBytes("UTF-8");
+            in.write(("Content-Length: " + content.length + "\r\n\r\n").getBytes("US-ASCII"));
+            in.write(content);
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        server.run(new ByteArrayInputStream(in.toByteArray()), out);
+        final byte[]    output    = out.toByteArray();
+        final List<Map> responses = new ArrayList<Map>();
+        final String    header    = "Content-Length: ";
+        int pos = 0;
+        while (pos < output.length)
+        {
+            int headerEnd = pos;
+            while (output[headerEnd] != '\r')
+            {
+                headerEnd++;
+            }
+            final int length = Integer.parseInt(new String(output, pos + header.length(),
+                                                           headerEnd - pos - header.length(), "US-ASCII"));
+            final int start  = headerEnd + 4;
+            responses.add((Map) Json.parse(new String(output, start, length, "UTF-8")));
+            pos = start + length;
+        }
+        return responses;
+    }
+
+    /**
+     * Applies LSP TextEdits, which refer to the original text and do not overlap, to a copy of the text.
+     */
+    private static String apply(final String text, final List edits)
+    {
+        final List<TabifyEdit> sorted = new ArrayList<TabifyEdit>();
+        for (Object o : edits)
+        {
+            final Map edit  = (Map) o;
+            final Map range = (Map) edit.get("range");
+            sorted.add(new TabifyEdit(offset(text, (Map) range.get("start")),
+                                      offset(text, (Map) range.get("end")),
+                                      (String) edit.get("newText")));
+        }
+        Collections.sort(sorted, new Comparator<TabifyEdit>()
+        {
+            public int compare(final TabifyEdit a, final TabifyEdit b)
+            {
+                return b.getStartOffset() - a.getStartOffset();
+            }
+        });
+        return TabifierEngine.apply(text, sorted);
+    }
+
+    private static int offset(final String text, final Map position)
+    {
+        return lineStart(text, ((Number) position.get("line")).intValue()) +
+               ((Number) position.get("character")).intValue();
+    }
+
+    private static int lineStart(final String text, final int line)
+    {
+        int offset = 0;
+        for (int i = 0; i < line; i++)
+        {
+            offset = text.indexOf('\n', offset) + 1;
+        }
+        return offset;
+    }
+}
@@ -0,0 +1,35 @@
+public class GroupCacheTest
+{
+    static class First
+    {
+        public static final int ONE = 1;
+        private int two;
+        public synchronized void run() { }
+        final static protected int three;
+        private final String four = "";
+        public static void stop() { }
+        transient private volatile int five;
+    }
+
+    static class Second
+    {
+        public static final int ONE = 1;
+        private int two;
+        public synchronized void run() { }
+        final static protected int three;
+        private final String four = "";
+        public static void stop() { }
+        transient private volatile int five;
+    }
+
+    static class Third
+    {
+        public static final int ONE = 1;
+        private int two;
+        public synchronized void run() { }
+        final static protected int three;
+        private final String four = "";
+        public static void stop() { }
+        transient private volatile int five;
+    }
+}